@@ -0,0 +1,436 @@
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gerador de carga do chat (arquivo único, sem dependências; Java 21+)
+ *
+ * Simula uma noite movimentada contra um WildFly local: usuários enviando mensagens (posters)
+ * e clientes recebendo por Long Polling e SSE. Mede a latência de entrega ponta a ponta
+ * (envio -> recebimento, pelo horário embutido no texto), vazão, erros e threads do servidor.
+ *
+ * Preparação: executar scripts/chat-carga-seed.sql (mesmos valores de --salas e --usuarios-por-sala)
+ *
+ * Uso:
+ *   java scripts/ChatCarga.java --url http://localhost:8080/soloandco-backend/api \
+ *        --salas 10 --usuarios-por-sala 50 --mensagens-por-segundo 20 \
+ *        --pollers 200 --sse 100 --duracao 60
+ *
+ * Métricas do servidor (threads, clientes aguardando, conexões) vêm de GET /chat/metricas,
+ * autenticado com --admin-email / --admin-senha (padrão: usuário criado pelo Seed).
+ *
+ * Escalonamento do Long Polling (threads do servidor x clientes aguardando), sem envio de mensagens:
+ *   java scripts/ChatCarga.java --degraus 100,250,500,1000,2000
+ * A cada degrau conecta mais pollers, aguarda --espera-degrau segundos (padrão 10) e imprime os clientes
+ * aguardando e as threads do servidor: com AsyncResponse as threads ficam estáveis enquanto os clientes crescem.
+ *
+ * Consultas ao banco por mensagem com N pollers (ex.: --pollers 200 --sse 0): o relatório compara as consultas
+ * de mensagens posteriores feitas pelo servidor durante a carga com as que seriam feitas se cada poller
+ * liberado consultasse o banco (comportamento anterior ao corpo compartilhado).
+ */
+public class ChatCarga {
+
+    private static final Pattern ID = Pattern.compile("[{,]\"id\":(\\d+)");
+    private static final Pattern MARCA = Pattern.compile("carga\\|(\\d+)\\|");
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\":\"([^\"]+)\"");
+    private static final Pattern SALA_ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern THREADS = Pattern.compile("\"threadsAtivas\":(\\d+)");
+    private static final Pattern AGUARDANDO = Pattern.compile("\"longPollingAguardando\":(\\d+)");
+    private static final Pattern RESPOSTAS_PRONTAS = Pattern.compile("\"longPollingRespostasProntas\":(\\d+)");
+    private static final Pattern RESPOSTAS_CONSULTADAS = Pattern.compile("\"longPollingRespostasConsultadas\":(\\d+)");
+    private static final Pattern CONSULTAS_POSTERIORES = Pattern.compile("\"consultasMensagensPosteriores\":(\\d+)");
+
+    private final String url;
+    private final int salas;
+    private final int usuariosPorSala;
+    private final int mensagensPorSegundo;
+    private final int pollers;
+    private final int clientesSse;
+    private final int duracaoSegundos;
+    private final String adminEmail;
+    private final String adminSenha;
+    private final List<Integer> degraus = new ArrayList<>();
+    private final int esperaDegrauSegundos;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private final List<Usuario> usuarios = Collections.synchronizedList(new ArrayList<>());
+
+    // Latências de entrega (ms), uma por mensagem recebida por cliente
+    private final List<Long> latencias = Collections.synchronizedList(new ArrayList<>());
+
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder entregues = new LongAdder();
+    private final Map<String, LongAdder> erros = new ConcurrentHashMap<>();
+    private final AtomicInteger threadsServidorMax = new AtomicInteger();
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private volatile boolean executando = true;
+
+    // Métricas do servidor no início e no fim do envio de mensagens
+    private String metricasInicio;
+    private String metricasFim;
+
+    private record Usuario(String token, int salaId) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opcoes.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new ChatCarga(opcoes).executar();
+    }
+
+    private ChatCarga(Map<String, String> opcoes) {
+        url = opcoes.getOrDefault("url", "http://localhost:8080/soloandco-backend/api");
+        salas = Integer.parseInt(opcoes.getOrDefault("salas", "10"));
+        usuariosPorSala = Integer.parseInt(opcoes.getOrDefault("usuarios-por-sala", "50"));
+        mensagensPorSegundo = Integer.parseInt(opcoes.getOrDefault("mensagens-por-segundo", "20"));
+        pollers = Integer.parseInt(opcoes.getOrDefault("pollers", "200"));
+        clientesSse = Integer.parseInt(opcoes.getOrDefault("sse", "100"));
+        duracaoSegundos = Integer.parseInt(opcoes.getOrDefault("duracao", "60"));
+        adminEmail = opcoes.getOrDefault("admin-email", "admin@exemplo.com");
+        adminSenha = opcoes.getOrDefault("admin-senha", "admin123");
+        for (String degrau : opcoes.getOrDefault("degraus", "").split(",")) {
+            if (!degrau.isBlank()) {
+                degraus.add(Integer.parseInt(degrau.trim()));
+            }
+        }
+        esperaDegrauSegundos = Integer.parseInt(opcoes.getOrDefault("espera-degrau", "10"));
+    }
+
+    private void executar() throws Exception {
+        System.out.printf("Autenticando %d usuários em %d salas...%n", salas * usuariosPorSala, salas);
+        try (ExecutorService login = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int s = 1; s <= salas; s++) {
+                for (int u = 1; u <= usuariosPorSala; u++) {
+                    String email = "carga.s" + s + ".u" + u + "@carga.local";
+                    login.submit(() -> autenticarUsuario(email));
+                }
+            }
+        }
+        if (usuarios.isEmpty()) {
+            System.err.println("Nenhum usuário autenticado. A massa de dados (chat-carga-seed.sql) foi carregada?");
+            return;
+        }
+        String tokenAdmin = autenticar(adminEmail, adminSenha);
+
+        ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor();
+        if (!degraus.isEmpty()) {
+            if (tokenAdmin == null) {
+                System.err.println("O escalonamento precisa das métricas do servidor (--admin-email / --admin-senha)");
+            } else {
+                escalonar(tokenAdmin, clientes);
+            }
+            executando = false;
+            clientes.shutdownNow();
+            System.exit(0);
+        }
+
+        for (int i = 0; i < pollers; i++) {
+            Usuario usuario = usuarios.get(i % usuarios.size());
+            clientes.submit(() -> longPoll(usuario));
+        }
+        for (int i = 0; i < clientesSse; i++) {
+            Usuario usuario = usuarios.get((i + pollers) % usuarios.size());
+            clientes.submit(() -> sse(usuario));
+        }
+
+        // Aguarda os clientes se conectarem antes de começar a enviar
+        Thread.sleep(2000);
+        if (tokenAdmin != null) {
+            metricasInicio = metricas(tokenAdmin);
+        }
+
+        ScheduledExecutorService agendador = Executors.newScheduledThreadPool(2);
+        long intervaloMicros = 1_000_000L / Math.max(1, mensagensPorSegundo);
+        agendador.scheduleAtFixedRate(() -> clientes.submit(this::enviarMensagem), 0, intervaloMicros, TimeUnit.MICROSECONDS);
+        if (tokenAdmin != null) {
+            agendador.scheduleAtFixedRate(() -> amostrarServidor(tokenAdmin), 0, 5, TimeUnit.SECONDS);
+        }
+
+        long inicio = System.nanoTime();
+        Thread.sleep(duracaoSegundos * 1000L);
+        agendador.shutdownNow();
+
+        // Janela para as últimas entregas chegarem
+        Thread.sleep(3000);
+        if (tokenAdmin != null) {
+            metricasFim = metricas(tokenAdmin);
+        }
+        executando = false;
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        clientes.shutdownNow();
+
+        relatorio(segundos);
+        System.exit(0);
+    }
+
+    /**
+     * Conecta pollers em degraus e imprime, em cada um, clientes aguardando e threads do servidor
+     */
+    private void escalonar(String tokenAdmin, ExecutorService clientes) throws InterruptedException {
+        System.out.println();
+        System.out.println("pollers | aguardando no servidor | threads do servidor");
+        int conectados = 0;
+        for (int degrau : degraus) {
+            for (; conectados < degrau; conectados++) {
+                Usuario usuario = usuarios.get(conectados % usuarios.size());
+                clientes.submit(() -> longPoll(usuario));
+            }
+            Thread.sleep(esperaDegrauSegundos * 1000L);
+            String metricas = metricas(tokenAdmin);
+            System.out.printf("%7d | %22s | %s%n", degrau, campo(AGUARDANDO, metricas), campo(THREADS, metricas));
+        }
+        if (!erros.isEmpty()) {
+            System.out.println("Erros:");
+            erros.forEach((tipo, total) -> System.out.printf("  %s: %d%n", tipo, total.sum()));
+        }
+    }
+
+    private void autenticarUsuario(String email) {
+        String token = autenticar(email, "carga123");
+        if (token == null) {
+            return;
+        }
+        try {
+            HttpResponse<String> resposta = http.send(get("/chat/minhas-salas", token).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = SALA_ID.matcher(resposta.body());
+            if (resposta.statusCode() == 200 && m.find()) {
+                usuarios.add(new Usuario(token, Integer.parseInt(m.group(1))));
+            } else {
+                erro("minhas-salas " + resposta.statusCode());
+            }
+        } catch (Exception e) {
+            erro("minhas-salas " + e.getClass().getSimpleName());
+        }
+    }
+
+    private String autenticar(String email, String senha) {
+        try {
+            String corpo = "{\"email\":\"" + email + "\",\"senha\":\"" + senha + "\"}";
+            HttpResponse<String> resposta = http.send(HttpRequest.newBuilder(URI.create(url + "/auth/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Matcher m = ACCESS_TOKEN.matcher(resposta.body());
+            if (resposta.statusCode() == 200 && m.find()) {
+                return m.group(1);
+            }
+            erro("login " + resposta.statusCode());
+        } catch (Exception e) {
+            erro("login " + e.getClass().getSimpleName());
+        }
+        return null;
+    }
+
+    private void enviarMensagem() {
+        Usuario usuario = usuarios.get(ThreadLocalRandom.current().nextInt(usuarios.size()));
+        String texto = "carga|" + System.currentTimeMillis() + "|" + sequencia.incrementAndGet();
+        try {
+            HttpResponse<Void> resposta = http.send(HttpRequest.newBuilder(URI.create(url + "/chat/salas/" + usuario.salaId() + "/mensagens"))
+                    .header("Authorization", "Bearer " + usuario.token())
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"mensagem\":\"" + texto + "\"}"))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            if (resposta.statusCode() == 201) {
+                enviadas.increment();
+            } else {
+                erro("envio " + resposta.statusCode());
+            }
+        } catch (Exception e) {
+            erro("envio " + e.getClass().getSimpleName());
+        }
+    }
+
+    private void longPoll(Usuario usuario) {
+        int after = ultimoId(usuario);
+        while (executando) {
+            try {
+                HttpResponse<String> resposta = http.send(get("/chat/salas/" + usuario.salaId() + "/mensagens/poll?after=" + after, usuario.token())
+                        .timeout(Duration.ofSeconds(60))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                if (resposta.statusCode() != 200) {
+                    erro("poll " + resposta.statusCode());
+                    Thread.sleep(1000);
+                    continue;
+                }
+                registrarEntregas(resposta.body());
+                Matcher m = ID.matcher(resposta.body());
+                while (m.find()) {
+                    after = Math.max(after, Integer.parseInt(m.group(1)));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                if (executando) {
+                    erro("poll " + e.getClass().getSimpleName());
+                }
+            }
+        }
+    }
+
+    private void sse(Usuario usuario) {
+        try {
+            HttpResponse<java.util.stream.Stream<String>> resposta = http.send(
+                    get("/chat/salas/" + usuario.salaId() + "/stream", usuario.token())
+                            .header("Accept", "text/event-stream")
+                            .build(), HttpResponse.BodyHandlers.ofLines());
+            if (resposta.statusCode() != 200) {
+                erro("sse " + resposta.statusCode());
+                return;
+            }
+            resposta.body()
+                    .takeWhile(linha -> executando)
+                    .filter(linha -> linha.startsWith("data:"))
+                    .forEach(this::registrarEntregas);
+        } catch (Exception e) {
+            if (executando) {
+                erro("sse " + e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private int ultimoId(Usuario usuario) {
+        try {
+            HttpResponse<String> resposta = http.send(get("/chat/salas/" + usuario.salaId() + "/mensagens?limit=1", usuario.token()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = ID.matcher(resposta.body());
+            return m.find() ? Integer.parseInt(m.group(1)) : 0;
+        } catch (Exception e) {
+            erro("historico " + e.getClass().getSimpleName());
+            return 0;
+        }
+    }
+
+    private void registrarEntregas(String corpo) {
+        long agora = System.currentTimeMillis();
+        Matcher m = MARCA.matcher(corpo);
+        while (m.find()) {
+            latencias.add(agora - Long.parseLong(m.group(1)));
+            entregues.increment();
+        }
+    }
+
+    private void amostrarServidor(String tokenAdmin) {
+        String metricas = metricas(tokenAdmin);
+        if (metricas == null) {
+            return;
+        }
+        Matcher m = THREADS.matcher(metricas);
+        if (m.find()) {
+            threadsServidorMax.accumulateAndGet(Integer.parseInt(m.group(1)), Math::max);
+        }
+        System.out.println("servidor: " + metricas);
+    }
+
+    private String metricas(String tokenAdmin) {
+        try {
+            HttpResponse<String> resposta = http.send(get("/chat/metricas", tokenAdmin).build(), HttpResponse.BodyHandlers.ofString());
+            if (resposta.statusCode() == 200) {
+                return resposta.body();
+            }
+            erro("metricas " + resposta.statusCode());
+        } catch (Exception e) {
+            erro("metricas " + e.getClass().getSimpleName());
+        }
+        return null;
+    }
+
+    private static String campo(Pattern padrao, String metricas) {
+        if (metricas == null) {
+            return "?";
+        }
+        Matcher m = padrao.matcher(metricas);
+        return m.find() ? m.group(1) : "?";
+    }
+
+    private HttpRequest.Builder get(String caminho, String token) {
+        return HttpRequest.newBuilder(URI.create(url + caminho))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+    }
+
+    private void erro(String tipo) {
+        erros.computeIfAbsent(tipo, k -> new LongAdder()).increment();
+    }
+
+    private void relatorio(double segundos) {
+        List<Long> ordenadas;
+        synchronized (latencias) {
+            ordenadas = new ArrayList<>(latencias);
+        }
+        Collections.sort(ordenadas);
+
+        System.out.println();
+        System.out.println("=== Resultado ===");
+        System.out.printf("Duração: %.1f s | salas: %d | usuários: %d | pollers: %d | SSE: %d%n",
+                segundos, salas, usuarios.size(), pollers, clientesSse);
+        System.out.printf("Mensagens enviadas: %d (%.1f/s)%n", enviadas.sum(), enviadas.sum() / segundos);
+        System.out.printf("Entregas recebidas: %d (%.1f/s)%n", entregues.sum(), entregues.sum() / segundos);
+        if (!ordenadas.isEmpty()) {
+            System.out.printf("Latência de entrega (ms): p50=%d p95=%d p99=%d max=%d%n",
+                    percentil(ordenadas, 50), percentil(ordenadas, 95), percentil(ordenadas, 99),
+                    ordenadas.get(ordenadas.size() - 1));
+        }
+        long totalErros = erros.values().stream().mapToLong(LongAdder::sum).sum();
+        long totalRequisicoes = enviadas.sum() + totalErros;
+        System.out.printf("Erros: %d (%.2f%%)%n", totalErros, totalRequisicoes > 0 ? 100.0 * totalErros / totalRequisicoes : 0.0);
+        erros.forEach((tipo, total) -> System.out.printf("  %s: %d%n", tipo, total.sum()));
+        System.out.printf("Threads do servidor (máximo amostrado): %d%n", threadsServidorMax.get());
+
+        long mensagens = enviadas.sum();
+        long consultas = diferenca(CONSULTAS_POSTERIORES);
+        long prontas = diferenca(RESPOSTAS_PRONTAS);
+        long consultadas = diferenca(RESPOSTAS_CONSULTADAS);
+        if (mensagens > 0 && consultas >= 0 && prontas >= 0 && consultadas >= 0) {
+            System.out.printf("Pollers liberados por mensagem: %.1f (%.1f com o corpo compartilhado)%n",
+                    (double) (prontas + consultadas) / mensagens, (double) prontas / mensagens);
+            System.out.printf("Consultas ao banco por mensagem (mensagens posteriores): %.2f%n", (double) consultas / mensagens);
+            System.out.printf("Sem o corpo compartilhado (cada poller liberado consulta): %.2f%n",
+                    (double) (consultas + prontas) / mensagens);
+        }
+    }
+
+    /**
+     * Diferença de um contador do servidor entre o início e o fim do envio (-1 se indisponível)
+     */
+    private long diferenca(Pattern contador) {
+        String inicio = campo(contador, metricasInicio);
+        String fim = campo(contador, metricasFim);
+        if ("?".equals(inicio) || "?".equals(fim)) {
+            return -1;
+        }
+        return Long.parseLong(fim) - Long.parseLong(inicio);
+    }
+
+    private static long percentil(List<Long> ordenadas, int p) {
+        int indice = (int) Math.ceil(p / 100.0 * ordenadas.size()) - 1;
+        return ordenadas.get(Math.max(0, Math.min(indice, ordenadas.size() - 1)));
+    }
+}
@@ -0,0 +1,50 @@
+-- Massa de dados para o teste de carga do chat (scripts/ChatCarga.java)
+-- Cria v_salas estabelecimentos "Carga N", cada um com sua sala de chat e v_usuarios_por_sala
+-- usuários (carga.s{sala}.u{n}@carga.local, senha "carga123") com check-in e acesso válido por 24h.
+-- Pode ser executado novamente: os dados de carga anteriores são removidos antes.
+-- NÃO executar em produção.
+
+BEGIN;
+
+DO $$
+DECLARE
+    v_salas              INTEGER := 10;
+    v_usuarios_por_sala  INTEGER := 50;
+    v_estabelecimento_id INTEGER;
+    v_sala_id            INTEGER;
+    v_usuario_id         INTEGER;
+    v_checkin_id         INTEGER;
+BEGIN
+    -- Remove dados de execuções anteriores (checkin não tem ON DELETE CASCADE)
+    DELETE FROM website.checkin
+     WHERE usuario_id IN (SELECT id FROM website.usuario WHERE email LIKE '%@carga.local')
+        OR estabelecimento_id IN (SELECT id FROM website.estabelecimento WHERE nome LIKE 'Carga %');
+    DELETE FROM website.usuario WHERE email LIKE '%@carga.local';
+    DELETE FROM website.estabelecimento WHERE nome LIKE 'Carga %';
+
+    FOR s IN 1..v_salas LOOP
+        INSERT INTO website.estabelecimento (nome, latitude, longitude, endereco)
+        VALUES ('Carga ' || s, -27.0 - s * 0.001, -48.0, 'Estabelecimento sintético de teste de carga')
+        RETURNING id INTO v_estabelecimento_id;
+
+        INSERT INTO website.chat_sala (estabelecimento_id)
+        VALUES (v_estabelecimento_id)
+        RETURNING id INTO v_sala_id;
+
+        FOR u IN 1..v_usuarios_por_sala LOOP
+            -- Senha em texto plano: aceita pelo caminho legado de UsuarioRepository.verificarSenha
+            INSERT INTO website.usuario (nome, email, senha, roles)
+            VALUES ('Carga S' || s || ' U' || u, 'carga.s' || s || '.u' || u || '@carga.local', 'carga123', 'USER')
+            RETURNING id INTO v_usuario_id;
+
+            INSERT INTO website.checkin (usuario_id, estabelecimento_id, distancia_m)
+            VALUES (v_usuario_id, v_estabelecimento_id, 0)
+            RETURNING id INTO v_checkin_id;
+
+            INSERT INTO website.chat_participante (sala_id, usuario_id, checkin_id, acesso_expira_em)
+            VALUES (v_sala_id, v_usuario_id, v_checkin_id, NOW() + INTERVAL '24 hours');
+        END LOOP;
+    END LOOP;
+END $$;
+
+COMMIT;
@@ -299,3 +299,149 @@ ALTER TABLE website.usuario ALTER COLUMN telefone DROP NOT NULL;
 
 -- Remove o constraint de unicidade do telefone (pois múltiplos usuários sem telefone resultariam em NULL duplicado)
 ALTER TABLE website.usuario DROP CONSTRAINT IF EXISTS uq_usuario_telefone;
+
+----------------------------------------------------------------------------------------------------------------------
+
+-- V7 - Cursor de leitura do chat (contador de mensagens não lidas)
+-- Sem FK para chat_mensagem: o cursor é apenas um marcador de posição
+ALTER TABLE website.chat_participante
+  ADD COLUMN IF NOT EXISTS ultima_mensagem_lida_id INTEGER;
+
+-- Participantes existentes começam com tudo lido
+UPDATE website.chat_participante p
+   SET ultima_mensagem_lida_id = (SELECT MAX(m.id) FROM website.chat_mensagem m WHERE m.sala_id = p.sala_id)
+ WHERE p.ultima_mensagem_lida_id IS NULL;
+
+COMMENT ON COLUMN website.chat_participante.ultima_mensagem_lida_id IS 'ID da última mensagem lida pelo participante na sala';
+
+----------------------------------------------------------------------------------------------------------------------
+
+-- V8 - Paginação do chat por ID (keyset)
+-- Índice para histórico, sincronização e última mensagem (sala_id = ? AND id < / > ? ORDER BY id)
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_sala_id ON website.chat_mensagem(sala_id, id DESC);
+
+----------------------------------------------------------------------------------------------------------------------
+
+-- V9 - Particionamento mensal de chat_mensagem por criado_em
+-- Partições website.chat_mensagem_pAAAAMM; as futuras são criadas e as antigas arquivadas (csv.gz) e removidas
+-- pelo job ChatMensagemParticaoRepository. A chave primária passa a incluir criado_em (exigência do particionamento).
+-- A partição padrão (chat_mensagem_padrao) recebe as mensagens de meses sem partição, para que o chat continue
+-- gravando se o job deixar de rodar por mais de chat.particoes.mesesFuturos meses. Ao criar a partição do mês,
+-- as mensagens dele que estiverem na padrão são movidas para ela.
+
+-- Cria (se não existir) a partição do mês informado
+CREATE OR REPLACE FUNCTION website.criar_particao_chat_mensagem(p_mes DATE) RETURNS VOID AS $$
+DECLARE
+    v_inicio DATE := date_trunc('month', p_mes)::DATE;
+    v_fim    DATE := (date_trunc('month', p_mes) + INTERVAL '1 month')::DATE;
+    v_nome   TEXT := 'chat_mensagem_p' || to_char(date_trunc('month', p_mes), 'YYYYMM');
+BEGIN
+    IF to_regclass('website.' || v_nome) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    -- Criada fora do particionamento e anexada depois: o PostgreSQL recusa uma partição cujo intervalo
+    -- já tem linhas na partição padrão
+    EXECUTE format('CREATE TABLE website.%I (LIKE website.chat_mensagem INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_nome);
+    IF to_regclass('website.chat_mensagem_padrao') IS NOT NULL THEN
+        EXECUTE format('WITH movidas AS (DELETE FROM website.chat_mensagem_padrao WHERE criado_em >= %L AND criado_em < %L RETURNING *) '
+                       'INSERT INTO website.%I SELECT * FROM movidas', v_inicio, v_fim, v_nome);
+    END IF;
+    EXECUTE format('ALTER TABLE website.chat_mensagem ATTACH PARTITION website.%I FOR VALUES FROM (%L) TO (%L)',
+                   v_nome, v_inicio, v_fim);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Converte a tabela existente (apenas na primeira execução)
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1
+                 FROM pg_partitioned_table pt
+                 JOIN pg_class c ON c.oid = pt.partrelid
+                 JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = 'website' AND c.relname = 'chat_mensagem') THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE website.chat_mensagem RENAME TO chat_mensagem_legado;
+    ALTER TABLE website.chat_mensagem_legado RENAME CONSTRAINT pk_chat_mensagem TO pk_chat_mensagem_legado;
+
+    CREATE TABLE website.chat_mensagem (
+        id INTEGER NOT NULL DEFAULT nextval('website.seq_chat_mensagem'),
+        sala_id INTEGER NOT NULL,
+        usuario_id INTEGER NOT NULL,
+        mensagem VARCHAR(1000) NOT NULL,
+        criado_em TIMESTAMP NOT NULL DEFAULT NOW(),
+        editado_em TIMESTAMP,
+        CONSTRAINT pk_chat_mensagem PRIMARY KEY (id, criado_em),
+        CONSTRAINT fk_chat_mensagem_sala FOREIGN KEY (sala_id) REFERENCES website.chat_sala(id) ON DELETE CASCADE,
+        CONSTRAINT fk_chat_mensagem_usuario FOREIGN KEY (usuario_id) REFERENCES website.usuario(id) ON DELETE CASCADE,
+        CONSTRAINT ck_chat_mensagem_nao_vazia CHECK (LENGTH(TRIM(mensagem)) > 0)
+    ) PARTITION BY RANGE (criado_em);
+
+    -- Partições do histórico existente até dois meses à frente
+    PERFORM website.criar_particao_chat_mensagem(mes::DATE)
+       FROM generate_series(date_trunc('month', COALESCE((SELECT MIN(criado_em) FROM website.chat_mensagem_legado), NOW())),
+                            date_trunc('month', NOW()) + INTERVAL '2 months',
+                            INTERVAL '1 month') AS mes;
+
+    INSERT INTO website.chat_mensagem (id, sala_id, usuario_id, mensagem, criado_em, editado_em)
+    SELECT id, sala_id, usuario_id, mensagem, COALESCE(criado_em, NOW()), editado_em
+      FROM website.chat_mensagem_legado;
+
+    -- A sequence passa para a nova tabela antes de remover a antiga (OWNED BY a removeria junto)
+    ALTER SEQUENCE website.seq_chat_mensagem OWNED BY website.chat_mensagem.id;
+    DROP TABLE website.chat_mensagem_legado;
+END $$;
+
+-- Partição padrão (ver acima); fora do padrão de nomes, não é arquivada pelo job
+CREATE TABLE IF NOT EXISTS website.chat_mensagem_padrao PARTITION OF website.chat_mensagem DEFAULT;
+
+-- Criado em cada partição: histórico, sincronização e última mensagem (sala_id = ? AND id < / > ? ORDER BY id)
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_sala_id ON website.chat_mensagem(sala_id, id DESC);
+
+-- Índices da V1, removidos junto com chat_mensagem_legado na conversão
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_sala ON website.chat_mensagem(sala_id);
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_criado_em ON website.chat_mensagem(criado_em DESC);
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_sala_criado ON website.chat_mensagem(sala_id, criado_em DESC);
+
+-- Registro das partições arquivadas
+CREATE SEQUENCE IF NOT EXISTS website.seq_chat_mensagem_arquivo INCREMENT BY 1 MINVALUE 1 START WITH 1 NO CYCLE;
+
+CREATE TABLE IF NOT EXISTS website.chat_mensagem_arquivo (
+    id INTEGER NOT NULL DEFAULT nextval('website.seq_chat_mensagem_arquivo'),
+    particao VARCHAR(63) NOT NULL,
+    arquivo VARCHAR(500) NOT NULL,
+    linhas BIGINT NOT NULL,
+    arquivado_em TIMESTAMP NOT NULL DEFAULT NOW(),
+    CONSTRAINT pk_chat_mensagem_arquivo PRIMARY KEY (id)
+);
+
+ALTER SEQUENCE website.seq_chat_mensagem_arquivo OWNED BY website.chat_mensagem_arquivo.id;
+
+----------------------------------------------------------------------------------------------------------------------
+
+-- V10 - Edição e remoção de mensagens do chat
+-- Mensagens removidas ficam como marcador (removido_em preenchido, texto descartado)
+ALTER TABLE website.chat_mensagem
+  ADD COLUMN IF NOT EXISTS removido_em TIMESTAMP;
+
+-- Sequência de alterações de cada sala: os clientes sincronizam edições e remoções pelo ID da alteração
+-- Sem FK para chat_mensagem (a chave primária particionada inclui criado_em); removida junto com a retenção do chat
+CREATE SEQUENCE IF NOT EXISTS website.seq_chat_mensagem_alteracao INCREMENT BY 1 MINVALUE 1 START WITH 1 NO CYCLE;
+
+CREATE TABLE IF NOT EXISTS website.chat_mensagem_alteracao (
+    id INTEGER NOT NULL DEFAULT nextval('website.seq_chat_mensagem_alteracao'),
+    sala_id INTEGER NOT NULL,
+    mensagem_id INTEGER NOT NULL,
+    tipo VARCHAR(10) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT NOW(),
+    CONSTRAINT pk_chat_mensagem_alteracao PRIMARY KEY (id),
+    CONSTRAINT fk_chat_mensagem_alteracao_sala FOREIGN KEY (sala_id) REFERENCES website.chat_sala(id) ON DELETE CASCADE,
+    CONSTRAINT ck_chat_mensagem_alteracao_tipo CHECK (tipo IN ('edicao', 'remocao'))
+);
+
+ALTER SEQUENCE website.seq_chat_mensagem_alteracao OWNED BY website.chat_mensagem_alteracao.id;
+
+-- Sincronização por cursor (sala_id = ? AND id > ? ORDER BY id)
+CREATE INDEX IF NOT EXISTS idx_chat_mensagem_alteracao_sala_id ON website.chat_mensagem_alteracao(sala_id, id);
@@ -10,7 +10,6 @@ import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.security.Principal;
-import java.util.Arrays;
 
 @Provider
 @Priority(Priorities.AUTHENTICATION)
@@ -32,25 +31,25 @@ public class JwtAuthFilter implements ContainerRequestFilter {
 
         String token = auth.substring("Bearer ".length()).trim();
         try {
-        var jws = JwtUtil.parse(token);           
-        Claims claims = jws.getPayload();         
+        // Tokens já verificados nesta instância dispensam nova verificação RS256 até o exp
+        Claims claims = JwtUtil.verificar(token);
         final String email = claims.getSubject();
-        final String roles = claims.get("roles", String.class);
+        final String roles = claims.get(JwtUtil.CLAIM_ROLES, String.class);
+        final String papeis = claims.get(JwtUtil.CLAIM_PAPEIS, String.class);
+        final UsuarioPrincipal principal = new UsuarioPrincipal(JwtUtil.usuarioId(claims), email, roles, papeis);
 
         // guarda em propriedades de request para quem quiser ler cru
         ctx.setProperty("userEmail", email);
+        ctx.setProperty("userId", principal.getId());
         ctx.setProperty("roles", roles);
 
         // injeta SecurityContext para @Context SecurityContext e isUserInRole
+        // (o principal traz o ID do usuário: os serviços não precisam buscá-lo pelo e-mail;
+        // os papéis já vêm separados em um conjunto imutável)
         SecurityContext base = ctx.getSecurityContext();
         ctx.setSecurityContext(new SecurityContext() {
-            @Override public Principal getUserPrincipal() { return () -> email; }
-            @Override public boolean isUserInRole(String role) {
-            if (roles == null || roles.isBlank()) return false;
-            return Arrays.stream(roles.split(","))
-                .map(String::trim)
-                .anyMatch(role::equals);
-            }
+            @Override public Principal getUserPrincipal() { return principal; }
+            @Override public boolean isUserInRole(String role) { return principal.temRole(role); }
             @Override public boolean isSecure() { return base != null && base.isSecure(); }
             @Override public String getAuthenticationScheme() { return "Bearer"; }
         });
@@ -0,0 +1,56 @@
+package filter;
+
+import java.util.Optional;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.SecurityContext;
+import model.Usuario;
+import repository.UsuarioRepository;
+
+/**
+ * Usuário autenticado da requisição atual
+ * Resolve o usuário no máximo uma vez por requisição, mesmo que o recurso consulte o ID ou a
+ * entidade várias vezes (ex.: validação de proprietário seguida da montagem da resposta).
+ * A entidade vem do UsuarioCache e deve ser tratada como somente leitura.
+ */
+@RequestScoped
+public class UsuarioAtual {
+
+    @Inject
+    private UsuarioRepository usuarioRepository;
+
+    private boolean usuarioResolvido;
+    private Optional<Usuario> usuario = Optional.empty();
+
+    private boolean idResolvido;
+    private Optional<Integer> usuarioId = Optional.empty();
+
+    /**
+     * Usuário autenticado completo (para quem precisa de mais do que o ID)
+     * @param sc SecurityContext da requisição
+     * @return Usuário autenticado, ou vazio se não autenticado/não encontrado
+     */
+    public Optional<Usuario> obter(SecurityContext sc) {
+        if (!usuarioResolvido) {
+            usuario = UsuarioPrincipal.de(sc).flatMap(usuarioRepository::buscarAutenticado);
+            usuarioResolvido = true;
+            usuarioId = usuario.map(Usuario::getId);
+            idResolvido = true;
+        }
+        return usuario;
+    }
+
+    /**
+     * ID do usuário autenticado (vindo do token quando possível, sem consulta ao banco)
+     * @param sc SecurityContext da requisição
+     * @return ID do usuário, ou vazio se não autenticado/não encontrado
+     */
+    public Optional<Integer> obterId(SecurityContext sc) {
+        if (!idResolvido) {
+            usuarioId = UsuarioPrincipal.de(sc).flatMap(usuarioRepository::buscarIdAutenticado);
+            idResolvido = true;
+        }
+        return usuarioId;
+    }
+}
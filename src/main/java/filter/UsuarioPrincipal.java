@@ -0,0 +1,103 @@
+package filter;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import jakarta.ws.rs.core.SecurityContext;
+
+/**
+ * Usuário autenticado pelo JwtAuthFilter, com os dados vindos das claims do token
+ * getName() continua retornando o e-mail (compatível com quem usa getUserPrincipal().getName()).
+ * O ID é null em tokens emitidos antes da claim "uid"; nesse caso quem precisa do usuário busca pelo e-mail.
+ * As claims "roles" e "papeis" são separadas uma única vez, na criação do principal.
+ * "roles" (legado + papéis) atende isUserInRole; verificações de papel de negócio (ex.: empresário) usam
+ * apenas "papeis", que vem de usuario_papel: usuario.roles pode ter sido enviado pelo próprio cliente no cadastro.
+ */
+public class UsuarioPrincipal implements Principal {
+
+    private final Integer id;
+    private final String email;
+    private final String roles;
+    private final Set<String> conjuntoRoles;
+    private final Set<String> papeis;
+
+    public UsuarioPrincipal(Integer id, String email, String roles, String papeis) {
+        this.id = id;
+        this.email = email;
+        this.roles = roles;
+        this.conjuntoRoles = separarRoles(roles);
+        this.papeis = separarRoles(papeis);
+    }
+
+    /**
+     * Separa a lista de papéis separados por vírgula (claims "roles" e "papeis" / coluna usuario.roles)
+     * @param roles Papéis separados por vírgula (pode ser null)
+     * @return Conjunto imutável, sem espaços, vazios ou repetidos
+     */
+    public static Set<String> separarRoles(String roles) {
+        if (roles == null || roles.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(roles.split(","))
+                .map(String::trim)
+                .filter(papel -> !papel.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Obtém o usuário autenticado da requisição
+     * @param sc SecurityContext instalado pelo JwtAuthFilter
+     * @return Usuário autenticado, ou vazio se a requisição não for autenticada
+     */
+    public static Optional<UsuarioPrincipal> de(SecurityContext sc) {
+        if (sc == null || sc.getUserPrincipal() == null) {
+            return Optional.empty();
+        }
+        Principal principal = sc.getUserPrincipal();
+        if (principal instanceof UsuarioPrincipal) {
+            return Optional.of((UsuarioPrincipal) principal);
+        }
+        return principal.getName() != null
+                ? Optional.of(new UsuarioPrincipal(null, principal.getName(), null, null))
+                : Optional.empty();
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public Set<String> getPapeis() {
+        return papeis;
+    }
+
+    /**
+     * Role da claim "roles" (legado + papéis), usada por isUserInRole
+     */
+    public boolean temRole(String role) {
+        return role != null && conjuntoRoles.contains(role);
+    }
+
+    /**
+     * Papel atribuído pelo servidor (usuario_papel), da claim "papeis"
+     * Tokens emitidos antes da claim não trazem papéis: quem verifica deve consultar o banco.
+     */
+    public boolean temPapel(String papel) {
+        return papel != null && papeis.contains(papel);
+    }
+}
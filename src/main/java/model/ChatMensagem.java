@@ -27,7 +27,7 @@ public class ChatMensagem {
     @Column(name = "mensagem", length = 1000, nullable = false)
     private String mensagem; // Armazenada criptografada
 
-    @Column(name = "criado_em", insertable = false, updatable = false)
+    @Column(name = "criado_em", updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date criadoEm;
 
@@ -35,6 +35,10 @@ public class ChatMensagem {
     @Temporal(TemporalType.TIMESTAMP)
     private Date editadoEm;
 
+    @Column(name = "removido_em")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date removidoEm;
+
     public Integer getId() {
         return id;
     }
@@ -82,5 +86,12 @@ public class ChatMensagem {
     public void setEditadoEm(Date editadoEm) {
         this.editadoEm = editadoEm;
     }
-}
 
+    public Date getRemovidoEm() {
+        return removidoEm;
+    }
+
+    public void setRemovidoEm(Date removidoEm) {
+        this.removidoEm = removidoEm;
+    }
+}
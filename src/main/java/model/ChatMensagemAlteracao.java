@@ -0,0 +1,74 @@
+package model;
+
+import java.util.Date;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "chat_mensagem_alteracao", schema = "website")
+public class ChatMensagemAlteracao {
+
+    public static final String TIPO_EDICAO = "edicao";
+    public static final String TIPO_REMOCAO = "remocao";
+
+    @Id
+    @SequenceGenerator(name = "chat_mensagem_alteracao_seq", sequenceName = "website.seq_chat_mensagem_alteracao", allocationSize = 1)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_mensagem_alteracao_seq")
+    @Column(name = "id", nullable = false)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sala_id", nullable = false)
+    private ChatSala sala;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "mensagem_id", nullable = false)
+    private ChatMensagem mensagem;
+
+    @Column(name = "tipo", length = 10, nullable = false)
+    private String tipo;
+
+    @Column(name = "criado_em", insertable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date criadoEm;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public ChatSala getSala() {
+        return sala;
+    }
+
+    public void setSala(ChatSala sala) {
+        this.sala = sala;
+    }
+
+    public ChatMensagem getMensagem() {
+        return mensagem;
+    }
+
+    public void setMensagem(ChatMensagem mensagem) {
+        this.mensagem = mensagem;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public Date getCriadoEm() {
+        return criadoEm;
+    }
+
+    public void setCriadoEm(Date criadoEm) {
+        this.criadoEm = criadoEm;
+    }
+}
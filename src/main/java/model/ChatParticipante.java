@@ -34,6 +34,9 @@ public class ChatParticipante {
     @Temporal(TemporalType.TIMESTAMP)
     private Date criadoEm;
 
+    @Column(name = "ultima_mensagem_lida_id")
+    private Integer ultimaMensagemLidaId;
+
     public Integer getId() {
         return id;
     }
@@ -81,5 +84,12 @@ public class ChatParticipante {
     public void setCriadoEm(Date criadoEm) {
         this.criadoEm = criadoEm;
     }
-}
 
+    public Integer getUltimaMensagemLidaId() {
+        return ultimaMensagemLidaId;
+    }
+
+    public void setUltimaMensagemLidaId(Integer ultimaMensagemLidaId) {
+        this.ultimaMensagemLidaId = ultimaMensagemLidaId;
+    }
+}
@@ -0,0 +1,52 @@
+package model.dto;
+
+import java.util.Date;
+
+public class ChatAlteracaoResponse {
+
+    private Integer id; // Cursor de alterações da sala
+    private Integer salaId;
+    private String tipo; // "edicao" ou "remocao"
+    private ChatMensagemResponse mensagem; // Estado atual da mensagem
+    private Date criadoEm;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getSalaId() {
+        return salaId;
+    }
+
+    public void setSalaId(Integer salaId) {
+        this.salaId = salaId;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public ChatMensagemResponse getMensagem() {
+        return mensagem;
+    }
+
+    public void setMensagem(ChatMensagemResponse mensagem) {
+        this.mensagem = mensagem;
+    }
+
+    public Date getCriadoEm() {
+        return criadoEm;
+    }
+
+    public void setCriadoEm(Date criadoEm) {
+        this.criadoEm = criadoEm;
+    }
+}
@@ -0,0 +1,31 @@
+package model.dto;
+
+public class ChatEventoResponse {
+
+    private String tipo;
+    private Object dados;
+
+    public ChatEventoResponse() {
+    }
+
+    public ChatEventoResponse(String tipo, Object dados) {
+        this.tipo = tipo;
+        this.dados = dados;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public Object getDados() {
+        return dados;
+    }
+
+    public void setDados(Object dados) {
+        this.dados = dados;
+    }
+}
@@ -12,6 +12,7 @@ public class ChatMensagemResponse {
     private String mensagem; // Descriptografada
     private Date criadoEm;
     private Date editadoEm;
+    private Date removidoEm; // Preenchido em mensagens removidas (mensagem = null)
 
     public Integer getId() {
         return id;
@@ -76,5 +77,12 @@ public class ChatMensagemResponse {
     public void setEditadoEm(Date editadoEm) {
         this.editadoEm = editadoEm;
     }
-}
 
+    public Date getRemovidoEm() {
+        return removidoEm;
+    }
+
+    public void setRemovidoEm(Date removidoEm) {
+        this.removidoEm = removidoEm;
+    }
+}
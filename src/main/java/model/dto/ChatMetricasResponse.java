@@ -0,0 +1,113 @@
+package model.dto;
+
+public class ChatMetricasResponse {
+
+    private Integer threadsAtivas;
+    private Integer threadsPico;
+    private Integer threadsDaemon;
+    private Integer longPollingAguardando;
+    private Integer conexoesSse;
+    private Integer conexoesWebSocket;
+    private Integer mensagensPendentesGravacao;
+    private Long enviosLimitadosUsuario;
+    private Long enviosLimitadosSala;
+    private Long longPollingRespostasProntas;
+    private Long longPollingRespostasConsultadas;
+    private Long consultasMensagensPosteriores;
+
+    public Integer getThreadsAtivas() {
+        return threadsAtivas;
+    }
+
+    public void setThreadsAtivas(Integer threadsAtivas) {
+        this.threadsAtivas = threadsAtivas;
+    }
+
+    public Integer getThreadsPico() {
+        return threadsPico;
+    }
+
+    public void setThreadsPico(Integer threadsPico) {
+        this.threadsPico = threadsPico;
+    }
+
+    public Integer getThreadsDaemon() {
+        return threadsDaemon;
+    }
+
+    public void setThreadsDaemon(Integer threadsDaemon) {
+        this.threadsDaemon = threadsDaemon;
+    }
+
+    public Integer getLongPollingAguardando() {
+        return longPollingAguardando;
+    }
+
+    public void setLongPollingAguardando(Integer longPollingAguardando) {
+        this.longPollingAguardando = longPollingAguardando;
+    }
+
+    public Integer getConexoesSse() {
+        return conexoesSse;
+    }
+
+    public void setConexoesSse(Integer conexoesSse) {
+        this.conexoesSse = conexoesSse;
+    }
+
+    public Integer getConexoesWebSocket() {
+        return conexoesWebSocket;
+    }
+
+    public void setConexoesWebSocket(Integer conexoesWebSocket) {
+        this.conexoesWebSocket = conexoesWebSocket;
+    }
+
+    public Integer getMensagensPendentesGravacao() {
+        return mensagensPendentesGravacao;
+    }
+
+    public void setMensagensPendentesGravacao(Integer mensagensPendentesGravacao) {
+        this.mensagensPendentesGravacao = mensagensPendentesGravacao;
+    }
+
+    public Long getEnviosLimitadosUsuario() {
+        return enviosLimitadosUsuario;
+    }
+
+    public void setEnviosLimitadosUsuario(Long enviosLimitadosUsuario) {
+        this.enviosLimitadosUsuario = enviosLimitadosUsuario;
+    }
+
+    public Long getEnviosLimitadosSala() {
+        return enviosLimitadosSala;
+    }
+
+    public void setEnviosLimitadosSala(Long enviosLimitadosSala) {
+        this.enviosLimitadosSala = enviosLimitadosSala;
+    }
+
+    public Long getLongPollingRespostasProntas() {
+        return longPollingRespostasProntas;
+    }
+
+    public void setLongPollingRespostasProntas(Long longPollingRespostasProntas) {
+        this.longPollingRespostasProntas = longPollingRespostasProntas;
+    }
+
+    public Long getLongPollingRespostasConsultadas() {
+        return longPollingRespostasConsultadas;
+    }
+
+    public void setLongPollingRespostasConsultadas(Long longPollingRespostasConsultadas) {
+        this.longPollingRespostasConsultadas = longPollingRespostasConsultadas;
+    }
+
+    public Long getConsultasMensagensPosteriores() {
+        return consultasMensagensPosteriores;
+    }
+
+    public void setConsultasMensagensPosteriores(Long consultasMensagensPosteriores) {
+        this.consultasMensagensPosteriores = consultasMensagensPosteriores;
+    }
+}
@@ -0,0 +1,61 @@
+package model.dto;
+
+public class ChatPresencaResponse {
+
+    private Integer salaId;
+    private Integer usuarioId;
+    private String usuarioNome;
+    private Boolean online;
+    private Boolean digitando;
+
+    public ChatPresencaResponse() {
+    }
+
+    public ChatPresencaResponse(Integer salaId, Integer usuarioId, String usuarioNome, Boolean online, Boolean digitando) {
+        this.salaId = salaId;
+        this.usuarioId = usuarioId;
+        this.usuarioNome = usuarioNome;
+        this.online = online;
+        this.digitando = digitando;
+    }
+
+    public Integer getSalaId() {
+        return salaId;
+    }
+
+    public void setSalaId(Integer salaId) {
+        this.salaId = salaId;
+    }
+
+    public Integer getUsuarioId() {
+        return usuarioId;
+    }
+
+    public void setUsuarioId(Integer usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+
+    public String getUsuarioNome() {
+        return usuarioNome;
+    }
+
+    public void setUsuarioNome(String usuarioNome) {
+        this.usuarioNome = usuarioNome;
+    }
+
+    public Boolean getOnline() {
+        return online;
+    }
+
+    public void setOnline(Boolean online) {
+        this.online = online;
+    }
+
+    public Boolean getDigitando() {
+        return digitando;
+    }
+
+    public void setDigitando(Boolean digitando) {
+        this.digitando = digitando;
+    }
+}
@@ -1,6 +1,9 @@
 package repository;
 
 import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 import jakarta.ejb.EJB;
@@ -25,36 +28,29 @@ public class AuthRepository extends AbstractCrudRepository<Usuario>{
     private static final Duration ACCESS_TTL  = Duration.ofMinutes(15);
     private static final Duration REFRESH_TTL = Duration.ofDays(15);
 
-    public TokenResponse login(String email, String senha) {
-        // Primeiro verifica se o usuário existe
-        var user = usuarioRepository.buscarPorEmail(email);
-        
-        if (user.isEmpty()) {
-            throw new NotAuthorizedException("Email ou senha incorretos");
-        }
-
-        // Depois verifica se a senha está correta usando o usuário já buscado
-        if (!usuarioRepository.verificarSenha(senha, user.get().getSenha())) {
-            throw new NotAuthorizedException("Email ou senha incorretos");
-        }
-
-        Usuario usuario = user.get();
-        String papeis = usuarioPapelRepository.obterPapeisComoString(usuario.getId());
-        
-        // Incluir papéis no campo roles do JWT (junto com o legado se existir)
-        String rolesParaJwt = usuario.getRoles();
-        if (papeis != null && !papeis.isBlank()) {
-            if (rolesParaJwt == null || rolesParaJwt.isBlank()) {
-                rolesParaJwt = papeis;
-            } else {
-                // Combinar roles legado com novos papéis
-                rolesParaJwt = rolesParaJwt + "," + papeis;
-            }
-        }
+    /**
+     * Primeira etapa do login: busca o usuário pelo e-mail
+     * A senha é verificada depois, fora da transação, no BcryptExecutor (ver AuthService.login).
+     */
+    public Usuario buscarParaLogin(String email) {
+        return usuarioRepository.buscarPorEmail(email)
+            .orElseThrow(() -> new NotAuthorizedException("Email ou senha incorretos"));
+    }
 
-        String access  = JwtUtil.generateToken(usuario.getEmail(), rolesParaJwt, ACCESS_TTL.toMinutes());
+    /**
+     * Última etapa do login: emite access e refresh token para o usuário com a senha já verificada
+     * O usuário é relido nesta transação: o carregado na primeira etapa pode estar desatualizado após a
+     * fila do BCrypt. Se a senha mudou nesse intervalo, o login é recusado.
+     * @param verificado Usuário da primeira etapa, cujo hash de senha foi verificado
+     */
+    public TokenResponse emitirTokens(Usuario verificado) {
+        Usuario usuario = usuarioRepository.buscarPorId(verificado.getId())
+            .filter(u -> Objects.equals(u.getSenha(), verificado.getSenha()))
+            .orElseThrow(() -> new NotAuthorizedException("Email ou senha incorretos"));
+
+        String access  = gerarAccessToken(usuario);
         String refresh = UUID.randomUUID().toString();
-        usuarioRepository.emitirRefreshToken(usuario, refresh);
+        usuarioRepository.emitirRefreshToken(usuario.getId(), refresh);
 
         return new TokenResponse(access, refresh, ACCESS_TTL.toSeconds());
     }
@@ -68,27 +64,39 @@ public class AuthRepository extends AbstractCrudRepository<Usuario>{
             throw new NotAuthorizedException("invalid_refresh");
         }
 
-        String papeis = usuarioPapelRepository.obterPapeisComoString(user.getId());
-        
-        // Incluir papéis no campo roles do JWT (junto com o legado se existir)
-        String rolesParaJwt = user.getRoles();
-        if (papeis != null && !papeis.isBlank()) {
-            if (rolesParaJwt == null || rolesParaJwt.isBlank()) {
-                rolesParaJwt = papeis;
-            } else {
-                // Combinar roles legado com novos papéis
-                rolesParaJwt = rolesParaJwt + "," + papeis;
-            }
-        }
-
-        String access  = JwtUtil.generateToken(user.getEmail(), rolesParaJwt, ACCESS_TTL.toMinutes());
+        String access  = gerarAccessToken(user);
         String refresh = UUID.randomUUID().toString(); // rotação de refresh
         usuarioRepository.emitirRefresh(user, refresh, REFRESH_TTL);
 
         return new TokenResponse(access, refresh, ACCESS_TTL.toSeconds());
     }
 
+    /**
+     * Gera o access token do usuário
+     * A claim "roles" combina os roles legados (usuario.roles) com os papéis de usuario_papel, sem repetições.
+     * A claim "papeis" traz apenas os papéis de usuario_papel, atribuídos pelo servidor: é a única usada
+     * para autorizar por papel, pois usuario.roles não é confiável (veio do cadastro em versões anteriores).
+     */
+    private String gerarAccessToken(Usuario usuario) {
+        Set<String> papeis = new LinkedHashSet<>();
+        adicionarRoles(papeis, usuarioPapelRepository.obterPapeisComoString(usuario.getId()));
+
+        Set<String> roles = new LinkedHashSet<>();
+        adicionarRoles(roles, usuario.getRoles());
+        roles.addAll(papeis);
+
+        return JwtUtil.generateToken(usuario.getId(), usuario.getEmail(),
+            roles.isEmpty() ? null : String.join(",", roles), String.join(",", papeis), ACCESS_TTL.toMinutes());
+    }
 
-
-
+    private void adicionarRoles(Set<String> roles, String lista) {
+        if (lista == null || lista.isBlank()) {
+            return;
+        }
+        for (String papel : lista.split(",")) {
+            if (!papel.isBlank()) {
+                roles.add(papel.trim());
+            }
+        }
+    }
 }
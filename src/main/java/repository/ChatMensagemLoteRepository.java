@@ -0,0 +1,366 @@
+package repository;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.inject.Inject;
+import model.ChatMensagem;
+import model.ChatSala;
+import model.Usuario;
+import model.dto.ChatMensagemResponse;
+import repository.utilitarios.NotificacaoChatRepository;
+import utils.AesCryptoUtil;
+import utils.ChatMensagemConversor;
+import utils.ChatNotificador;
+
+/**
+ * Gravação em lote (write-behind) das mensagens do chat, opcional (chat.gravacao.lote.ativo)
+ * A mensagem recebe o ID de um bloco reservado da sequence, é distribuída na sala imediatamente
+ * e fica pendente em memória até ser gravada junto com as demais em um batch JDBC, a cada
+ * chat.gravacao.lote.intervaloMs ou ao acumular chat.gravacao.lote.tamanho mensagens.
+ * As pendentes são gravadas também no desligamento da aplicação.
+ *
+ * Os cursores do chat (after, Last-Event-ID, cursor de leitura) supõem que os IDs de uma sala são
+ * distribuídos em ordem crescente. Por isso a reserva do ID e a distribuição acontecem sob a mesma trava,
+ * nenhuma mensagem desta instância é gravada pela sequence enquanto a gravação em lote está ativa
+ * (com a fila cheia, quem envia espera a gravação em vez de gravar na hora) e a gravação em lote
+ * é recusada com chat.notificacao.tipo=postgres: blocos reservados por instâncias diferentes
+ * seriam distribuídos fora de ordem.
+ * Os lotes são gravados com commit próprio na conexão (setAutoCommit/commit): nenhum método do bean,
+ * nem o desligamento, roda dentro de transação do container.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ChatMensagemLoteRepository {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatMensagemLoteRepository.class.getName());
+
+    // Acima deste número de pendentes (ex.: banco fora do ar), quem envia espera a gravação das pendentes
+    private static final int MAXIMO_PENDENTES = 10000;
+
+    private static final String SQL_RESERVAR_IDS =
+            "SELECT nextval('website.seq_chat_mensagem') FROM generate_series(1, ?)";
+
+    private static final String SQL_INSERIR =
+            "INSERT INTO website.chat_mensagem (id, sala_id, usuario_id, mensagem, criado_em) VALUES (?, ?, ?, ?, ?)";
+
+    @Resource(lookup = "java:jboss/datasources/soloandco")
+    private DataSource dataSource;
+
+    @Resource
+    private ManagedScheduledExecutorService agendador;
+
+    @Inject
+    private NotificacaoChatRepository notificacaoRepository;
+
+    @Inject
+    @ConfigProperty(name = "chat.gravacao.lote.ativo", defaultValue = "false")
+    private boolean ativo;
+
+    @Inject
+    @ConfigProperty(name = "chat.gravacao.lote.intervaloMs", defaultValue = "20")
+    private long intervaloMs;
+
+    @Inject
+    @ConfigProperty(name = "chat.gravacao.lote.tamanho", defaultValue = "100")
+    private int tamanhoLote;
+
+    @Inject
+    @ConfigProperty(name = "chat.gravacao.lote.blocoIds", defaultValue = "50")
+    private int blocoIds;
+
+    @Inject
+    @ConfigProperty(name = "chat.notificacao.tipo", defaultValue = NotificacaoChatRepository.NOTIFICACAO_LOCAL)
+    private String tipoNotificacao;
+
+    // IDs já reservados na sequence e ainda não usados (protegido por distribuindo)
+    private final Deque<Integer> idsReservados = new ArrayDeque<>();
+
+    // Reserva do ID e distribuição da mensagem: os IDs chegam aos clientes em ordem crescente
+    private final ReentrantLock distribuindo = new ReentrantLock();
+
+    private final ConcurrentLinkedDeque<Pendente> pendentes = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger totalPendentes = new AtomicInteger();
+
+    // Apenas uma gravação em andamento por vez
+    private final ReentrantLock gravando = new ReentrantLock();
+
+    private ScheduledFuture<?> tarefa;
+
+    private static final class Pendente {
+        private final ChatMensagem mensagem;
+        private final ChatMensagemResponse response;
+
+        private Pendente(ChatMensagem mensagem, ChatMensagemResponse response) {
+            this.mensagem = mensagem;
+            this.response = response;
+        }
+    }
+
+    @PostConstruct
+    private void iniciar() {
+        if (ativo && NotificacaoChatRepository.NOTIFICACAO_POSTGRES.equalsIgnoreCase(tipoNotificacao)) {
+            LOGGER.warning("chat.gravacao.lote.ativo ignorado: a gravação em lote não é compatível com "
+                    + "chat.notificacao.tipo=postgres (IDs reservados em blocos chegariam fora de ordem às demais instâncias)");
+            ativo = false;
+        }
+        if (ativo) {
+            tarefa = agendador.scheduleWithFixedDelay(() -> gravarPendentes(false),
+                    intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    private void parar() {
+        if (tarefa != null) {
+            tarefa.cancel(false);
+        }
+        gravarPendentes(true);
+    }
+
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    /**
+     * Aceita uma mensagem para gravação em lote e a distribui imediatamente na sala (nesta instância)
+     * As demais instâncias são avisadas depois que o lote é gravado.
+     * Com a fila cheia, grava as pendentes antes de aceitar a mensagem (quem envia espera).
+     * @param sala Sala do chat
+     * @param usuario Usuário que está enviando
+     * @param mensagemPlain Mensagem em texto plano
+     * @return Mensagem aceita (descriptografada), ou vazio se a gravação em lote estiver desativada
+     * @throws Exception Se houver erro na criptografia, na reserva de IDs ou se o banco não aceitar as pendentes
+     */
+    public Optional<ChatMensagemResponse> enfileirar(ChatSala sala, Usuario usuario, String mensagemPlain) throws Exception {
+        if (!ativo) {
+            return Optional.empty();
+        }
+        if (mensagemPlain == null || mensagemPlain.trim().isEmpty()) {
+            throw new IllegalArgumentException("Mensagem não pode ser vazia");
+        }
+        if (totalPendentes.get() >= MAXIMO_PENDENTES) {
+            // Gravar esta mensagem pela sequence furaria a ordem dos IDs já reservados: espera a fila baixar
+            gravarPendentes(true);
+            if (totalPendentes.get() >= MAXIMO_PENDENTES) {
+                throw new SQLException("Gravação em lote saturada: banco não está aceitando as mensagens pendentes");
+            }
+        }
+
+        ChatMensagem mensagem = new ChatMensagem();
+        mensagem.setSala(sala);
+        mensagem.setUsuario(usuario);
+        mensagem.setMensagem(AesCryptoUtil.criptografar(mensagemPlain));
+
+        ChatMensagemResponse response;
+        distribuindo.lock();
+        try {
+            mensagem.setId(reservarId());
+            mensagem.setCriadoEm(new Date());
+            response = ChatMensagemConversor.converterParaResponse(mensagem);
+            pendentes.add(new Pendente(mensagem, response));
+            totalPendentes.incrementAndGet();
+            ChatNotificador.notificarNovaMensagem(response);
+        } finally {
+            distribuindo.unlock();
+        }
+
+        if (totalPendentes.get() >= tamanhoLote) {
+            agendador.execute(() -> gravarPendentes(false));
+        }
+        return Optional.of(response);
+    }
+
+    /**
+     * Lista as mensagens de uma sala aceitas e ainda não retiradas da fila de gravação
+     * Uma mensagem de um lote que acabou de ser gravado pode aparecer aqui e no banco: quem junta
+     * as duas listas deve descartar IDs repetidos.
+     * @param salaId ID da sala
+     * @return Mensagens pendentes em ordem de ID
+     */
+    public List<ChatMensagemResponse> listarPendentes(Integer salaId) {
+        if (totalPendentes.get() == 0) {
+            return List.of();
+        }
+        return pendentes.stream()
+                .map(p -> p.response)
+                .filter(r -> salaId.equals(r.getSalaId()))
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Junta mensagens lidas do banco com as pendentes da sala no mesmo intervalo de IDs
+     * Usado pelas consultas que vão ao banco (scroll, sincronização fora da janela em memória, carregadores):
+     * sem isso uma mensagem já distribuída, mas ainda não gravada, ficaria de fora da página.
+     * @param salaId ID da sala
+     * @param doBanco Mensagens lidas do banco, em ordem de ID
+     * @param depoisDe Considera apenas pendentes com ID maior que este (null = sem limite)
+     * @param antesDe Considera apenas pendentes com ID menor que este (null = sem limite)
+     * @return Mensagens em ordem de ID, sem IDs repetidos
+     */
+    public List<ChatMensagemResponse> mesclarPendentes(Integer salaId, List<ChatMensagemResponse> doBanco,
+                                                       Integer depoisDe, Integer antesDe) {
+        List<ChatMensagemResponse> pendentesSala = listarPendentes(salaId);
+        if (pendentesSala.isEmpty()) {
+            return doBanco;
+        }
+        TreeMap<Integer, ChatMensagemResponse> porId = new TreeMap<>();
+        for (ChatMensagemResponse mensagem : doBanco) {
+            porId.put(mensagem.getId(), mensagem);
+        }
+        for (ChatMensagemResponse mensagem : pendentesSala) {
+            if ((depoisDe == null || mensagem.getId() > depoisDe) && (antesDe == null || mensagem.getId() < antesDe)) {
+                porId.putIfAbsent(mensagem.getId(), mensagem);
+            }
+        }
+        return new ArrayList<>(porId.values());
+    }
+
+    /**
+     * Retorna o número de mensagens aceitas e ainda não gravadas (para monitoramento)
+     * @return Mensagens pendentes
+     */
+    public int contarPendentes() {
+        return totalPendentes.get();
+    }
+
+    private Integer reservarId() throws SQLException {
+        if (idsReservados.isEmpty()) {
+            try (Connection conexao = dataSource.getConnection();
+                    PreparedStatement ps = conexao.prepareStatement(SQL_RESERVAR_IDS)) {
+                ps.setInt(1, blocoIds);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        idsReservados.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+        return idsReservados.poll();
+    }
+
+    private void gravarPendentes(boolean aguardar) {
+        if (aguardar) {
+            gravando.lock();
+        } else if (!gravando.tryLock()) {
+            return;
+        }
+        try {
+            while (!pendentes.isEmpty()) {
+                // O lote só sai da fila depois de gravado: listarPendentes nunca deixa de enxergá-lo
+                // (entre o commit e a retirada a mensagem está nos dois lados; quem junta com o banco remove o repetido)
+                // Só esta gravação retira itens, e sempre do início: os primeiros da fila são exatamente o lote
+                List<Pendente> lote = pendentes.stream()
+                        .limit(tamanhoLote)
+                        .collect(Collectors.toCollection(ArrayList::new));
+
+                List<Pendente> gravados;
+                try {
+                    gravados = gravarLote(lote);
+                } catch (SQLException e) {
+                    // Banco indisponível: o lote continua na fila e é tentado na próxima execução
+                    LOGGER.log(Level.WARNING, "Falha ao gravar lote de mensagens do chat", e);
+                    return;
+                }
+
+                for (int i = 0; i < lote.size(); i++) {
+                    pendentes.poll();
+                }
+                totalPendentes.addAndGet(-lote.size());
+                if (!gravados.isEmpty()) {
+                    notificacaoRepository.publicarDemaisInstancias(gravados.stream()
+                            .map(p -> p.response)
+                            .collect(Collectors.toList()));
+                }
+            }
+        } finally {
+            gravando.unlock();
+        }
+    }
+
+    /**
+     * Grava um lote em uma única transação; se alguma linha for rejeitada, grava uma a uma
+     * @return Mensagens efetivamente gravadas
+     */
+    private List<Pendente> gravarLote(List<Pendente> lote) throws SQLException {
+        try (Connection conexao = dataSource.getConnection()) {
+            conexao.setAutoCommit(false);
+            try (PreparedStatement ps = conexao.prepareStatement(SQL_INSERIR)) {
+                for (Pendente pendente : lote) {
+                    preencher(ps, pendente.mensagem);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conexao.commit();
+                return lote;
+            } catch (BatchUpdateException e) {
+                conexao.rollback();
+                // Uma linha inválida (ex.: sala removida) não deve travar as demais
+                return gravarIndividualmente(conexao, lote);
+            }
+        }
+    }
+
+    private List<Pendente> gravarIndividualmente(Connection conexao, List<Pendente> lote) throws SQLException {
+        List<Pendente> gravados = new ArrayList<>();
+        try (PreparedStatement ps = conexao.prepareStatement(SQL_INSERIR)) {
+            for (Pendente pendente : lote) {
+                try {
+                    preencher(ps, pendente.mensagem);
+                    ps.executeUpdate();
+                    conexao.commit();
+                    gravados.add(pendente);
+                } catch (SQLException e) {
+                    conexao.rollback();
+                    LOGGER.log(Level.SEVERE, "Mensagem do chat descartada: " + pendente.mensagem.getId(), e);
+                }
+            }
+        }
+        return gravados;
+    }
+
+    private void preencher(PreparedStatement ps, ChatMensagem mensagem) throws SQLException {
+        ps.setInt(1, mensagem.getId());
+        ps.setInt(2, mensagem.getSala().getId());
+        ps.setInt(3, mensagem.getUsuario().getId());
+        ps.setString(4, mensagem.getMensagem());
+        ps.setTimestamp(5, new Timestamp(mensagem.getCriadoEm().getTime()));
+    }
+}
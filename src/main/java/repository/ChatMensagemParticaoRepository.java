@@ -0,0 +1,229 @@
+package repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import utils.ChatParticoes;
+
+/**
+ * Manutenção das partições mensais de website.chat_mensagem (V9)
+ * Diariamente cria as partições dos próximos meses e arquiva as que saíram da retenção:
+ * a partição é exportada para um arquivo csv.gz (COPY), desanexada e removida, e o arquivo
+ * fica registrado em website.chat_mensagem_arquivo. As alterações (website.chat_mensagem_alteracao)
+ * anteriores ao mesmo limite são removidas.
+ * A cada meia hora atualiza o menor ID de cada partição, usado nas janelas de consulta (ChatParticoes).
+ * Se o job ficar parado além das partições futuras, as mensagens vão para a partição padrão
+ * (chat_mensagem_padrao) e são movidas para a partição do mês quando ela for criada.
+ * Roda fora de transação do container: o arquivamento controla a própria transação na conexão.
+ */
+@Singleton
+@Startup
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ChatMensagemParticaoRepository {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatMensagemParticaoRepository.class.getName());
+
+    private static final Pattern NOME_PARTICAO = Pattern.compile("chat_mensagem_p(\\d{6})");
+    private static final DateTimeFormatter SUFIXO = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String SQL_CRIAR_PARTICAO = "SELECT website.criar_particao_chat_mensagem(?)";
+
+    private static final String SQL_LISTAR_PARTICOES =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+            "WHERE n.nspname = 'website' AND p.relname = 'chat_mensagem'";
+
+    private static final String SQL_REGISTRAR_ARQUIVO =
+            "INSERT INTO website.chat_mensagem_arquivo (particao, arquivo, linhas) VALUES (?, ?, ?)";
+
+    private static final String SQL_REMOVER_ALTERACOES =
+            "DELETE FROM website.chat_mensagem_alteracao WHERE criado_em < ?";
+
+    @Resource(lookup = "java:jboss/datasources/soloandco")
+    private DataSource dataSource;
+
+    @Inject
+    @ConfigProperty(name = "chat.particoes.mesesFuturos", defaultValue = "2")
+    private int mesesFuturos;
+
+    @Inject
+    @ConfigProperty(name = "chat.particoes.retencaoMeses", defaultValue = "12")
+    private int retencaoMeses;
+
+    @Inject
+    @ConfigProperty(name = "chat.particoes.diretorioArquivo", defaultValue = "/var/lib/soloandco/chat-arquivo")
+    private String diretorioArquivo;
+
+    /**
+     * Na inicialização apenas garante as partições e as janelas; o arquivamento (COPY de uma partição
+     * inteira) fica para o job diário, para não atrasar o deploy.
+     */
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void init() {
+        try {
+            criarParticoesFuturas();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Falha ao criar as partições do chat", e);
+        }
+        atualizarJanelas();
+    }
+
+    /**
+     * Cria as partições futuras, arquiva as antigas e atualiza as janelas de consulta
+     */
+    @Schedule(hour = "3", minute = "0", persistent = false)
+    public void manter() {
+        try {
+            criarParticoesFuturas();
+            arquivarParticoesAntigas();
+        } catch (Exception | LinkageError e) {
+            // A próxima execução tenta novamente; as partições já criadas cobrem os próximos meses
+            // LinkageError: driver PostgreSQL não visível para a aplicação (ver jboss-deployment-structure.xml)
+            LOGGER.log(Level.SEVERE, "Falha na manutenção das partições do chat", e);
+        }
+        atualizarJanelas();
+    }
+
+    /**
+     * Atualiza o menor ID de cada partição (janelas de criado_em das consultas)
+     */
+    @Schedule(hour = "*", minute = "*/30", persistent = false)
+    public void atualizarJanelas() {
+        try (Connection conexao = dataSource.getConnection()) {
+            Map<Integer, YearMonth> menoresIds = new HashMap<>();
+            for (Map.Entry<YearMonth, String> particao : listarParticoes(conexao).entrySet()) {
+                try (Statement st = conexao.createStatement();
+                        ResultSet rs = st.executeQuery("SELECT MIN(id) FROM website." + particao.getValue())) {
+                    if (rs.next() && rs.getObject(1) != null) {
+                        menoresIds.put(rs.getInt(1), particao.getKey());
+                    }
+                }
+            }
+            ChatParticoes.atualizar(menoresIds);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Falha ao atualizar as janelas das partições do chat", e);
+        }
+    }
+
+    private void criarParticoesFuturas() throws SQLException {
+        YearMonth atual = YearMonth.now();
+        try (Connection conexao = dataSource.getConnection();
+                PreparedStatement ps = conexao.prepareStatement(SQL_CRIAR_PARTICAO)) {
+            for (int i = 0; i <= mesesFuturos; i++) {
+                ps.setDate(1, java.sql.Date.valueOf(atual.plusMonths(i).atDay(1)));
+                ps.execute();
+            }
+        }
+    }
+
+    private void arquivarParticoesAntigas() throws SQLException, IOException {
+        if (retencaoMeses <= 0) {
+            return;
+        }
+        YearMonth limite = YearMonth.now().minusMonths(retencaoMeses);
+        try (Connection conexao = dataSource.getConnection()) {
+            for (Map.Entry<YearMonth, String> particao : listarParticoes(conexao).headMap(limite).entrySet()) {
+                arquivar(conexao, particao.getValue());
+            }
+
+            // Edições e remoções (V10) seguem a mesma retenção das mensagens
+            try (PreparedStatement ps = conexao.prepareStatement(SQL_REMOVER_ALTERACOES)) {
+                ps.setTimestamp(1, Timestamp.valueOf(limite.atDay(1).atStartOfDay()));
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Exporta a partição para csv.gz e só então a desanexa e remove (em uma transação)
+     * Se a exportação falhar, a partição permanece e o arquivamento é tentado na próxima execução.
+     */
+    private void arquivar(Connection conexao, String particao) throws SQLException, IOException {
+        Path diretorio = Paths.get(diretorioArquivo);
+        Files.createDirectories(diretorio);
+        Path arquivo = diretorio.resolve(particao + ".csv.gz");
+        Path temporario = diretorio.resolve(particao + ".csv.gz.tmp");
+
+        long linhas;
+        try (OutputStream saida = new GZIPOutputStream(Files.newOutputStream(temporario))) {
+            linhas = conexao.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut("COPY website." + particao + " TO STDOUT WITH (FORMAT csv, HEADER)", saida);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        conexao.setAutoCommit(false);
+        try (Statement st = conexao.createStatement();
+                PreparedStatement registro = conexao.prepareStatement(SQL_REGISTRAR_ARQUIVO)) {
+            st.execute("ALTER TABLE website.chat_mensagem DETACH PARTITION website." + particao);
+            st.execute("DROP TABLE website." + particao);
+            registro.setString(1, particao);
+            registro.setString(2, arquivo.toString());
+            registro.setLong(3, linhas);
+            registro.executeUpdate();
+            conexao.commit();
+        } catch (SQLException e) {
+            conexao.rollback();
+            throw e;
+        } finally {
+            conexao.setAutoCommit(true);
+        }
+
+        LOGGER.info("Partição " + particao + " arquivada em " + arquivo + " (" + linhas + " mensagens)");
+    }
+
+    /**
+     * Lista as partições anexadas a chat_mensagem
+     * @return Mapa ordenado de mês -> nome da partição (apenas nomes no padrão chat_mensagem_pAAAAMM)
+     */
+    private NavigableMap<YearMonth, String> listarParticoes(Connection conexao) throws SQLException {
+        NavigableMap<YearMonth, String> particoes = new TreeMap<>();
+        try (Statement st = conexao.createStatement();
+                ResultSet rs = st.executeQuery(SQL_LISTAR_PARTICOES)) {
+            while (rs.next()) {
+                String nome = rs.getString(1);
+                Matcher m = NOME_PARTICAO.matcher(nome);
+                if (m.matches()) {
+                    particoes.put(YearMonth.parse(m.group(1), SUFIXO), nome);
+                }
+            }
+        }
+        return particoes;
+    }
+}
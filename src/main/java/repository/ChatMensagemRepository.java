@@ -1,19 +1,31 @@
 package repository;
 
+import java.util.Date;
 import java.util.List;
 
 import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.persistence.TemporalType;
 import model.ChatMensagem;
+import model.ChatMensagemAlteracao;
 import model.ChatSala;
 import model.Usuario;
 import repository.base.AbstractCrudRepository;
+import repository.utilitarios.NotificacaoChatRepository;
 import utils.AesCryptoUtil;
+import utils.ChatParticoes;
 
 @Stateless
 public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem> {
 
+    // Conteúdo gravado no lugar do texto de mensagens removidas
+    private static final String MENSAGEM_REMOVIDA = "-";
+
+    @Inject
+    private NotificacaoChatRepository notificacaoRepository;
+
     /**
-     * Lista as últimas mensagens de uma sala ordenadas por data (mais antigas primeiro)
+     * Lista as primeiras mensagens de uma sala (mais antigas primeiro)
      * @param salaId ID da sala
      * @param limit Número máximo de mensagens
      * @return Lista de mensagens (CRIPTOGRAFADAS - descriptografar ao usar)
@@ -23,7 +35,7 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
                 "SELECT m FROM ChatMensagem m " +
                 "JOIN FETCH m.usuario " +
                 "WHERE m.sala.id = :salaId " +
-                "ORDER BY m.criadoEm ASC",
+                "ORDER BY m.id ASC",
                 ChatMensagem.class)
                 .setParameter("salaId", salaId)
                 .setMaxResults(limit != null ? limit : 50)
@@ -50,8 +62,110 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
         mensagem.setSala(sala);
         mensagem.setUsuario(usuario);
         mensagem.setMensagem(mensagemCriptografada);
+        // Definido aqui (como na gravação em lote): a resposta vai para o cache de recentes sem refresh
+        mensagem.setCriadoEm(new Date());
+
+        // A reserva do ID, a gravação e a notificação às instâncias ficam na mesma transação
+        notificacaoRepository.antesDeInserir(em, sala.getId());
+        inserir(mensagem);
+        notificacaoRepository.aposInserir(em, sala.getId(), mensagem.getId());
+        return mensagem;
+    }
+
+    /**
+     * Busca uma mensagem de uma sala pelo ID
+     * @param salaId ID da sala
+     * @param mensagemId ID da mensagem
+     * @return Mensagem com usuário carregado (CRIPTOGRAFADA) ou null se não existir na sala
+     */
+    public ChatMensagem buscarNaSala(Integer salaId, Integer mensagemId) {
+        return em.createQuery(
+                "SELECT m FROM ChatMensagem m " +
+                "JOIN FETCH m.usuario " +
+                "WHERE m.sala.id = :salaId AND m.id = :mensagemId",
+                ChatMensagem.class)
+                .setParameter("salaId", salaId)
+                .setParameter("mensagemId", mensagemId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Edita o texto de uma mensagem (criptografado novamente) e registra a alteração na sala
+     * Mensagem e alteração são gravadas na mesma transação.
+     * @param mensagem Mensagem a editar (obtida com buscarNaSala)
+     * @param mensagemPlain Novo texto em texto plano
+     * @return Alteração registrada, com a mensagem atualizada
+     * @throws Exception Se houver erro na criptografia
+     */
+    public ChatMensagemAlteracao editarMensagem(ChatMensagem mensagem, String mensagemPlain) throws Exception {
+        if (mensagemPlain == null || mensagemPlain.trim().isEmpty()) {
+            throw new IllegalArgumentException("Mensagem não pode ser vazia");
+        }
+
+        mensagem.setMensagem(AesCryptoUtil.criptografar(mensagemPlain));
+        mensagem.setEditadoEm(new Date());
+        return registrarAlteracao(em.merge(mensagem), ChatMensagemAlteracao.TIPO_EDICAO);
+    }
+
+    /**
+     * Remove uma mensagem: o texto é descartado e a mensagem fica como marcador (removido_em)
+     * @param mensagem Mensagem a remover (obtida com buscarNaSala)
+     * @return Alteração registrada, com a mensagem já marcada como removida
+     */
+    public ChatMensagemAlteracao removerMensagem(ChatMensagem mensagem) {
+        // A coluna não aceita texto vazio; o conteúdo original não é mantido
+        mensagem.setMensagem(MENSAGEM_REMOVIDA);
+        mensagem.setRemovidoEm(new Date());
+        return registrarAlteracao(em.merge(mensagem), ChatMensagemAlteracao.TIPO_REMOCAO);
+    }
+
+    /**
+     * Lista as alterações (edições e remoções) de uma sala posteriores a um cursor
+     * @param salaId ID da sala
+     * @param afterId ID da última alteração recebida pelo cliente
+     * @param limit Número máximo de alterações
+     * @return Alterações em ordem de ID, com mensagem e usuário carregados (CRIPTOGRAFADAS)
+     */
+    public List<ChatMensagemAlteracao> listarAlteracoesPosteriores(Integer salaId, Integer afterId, Integer limit) {
+        return em.createQuery(
+                "SELECT a FROM ChatMensagemAlteracao a " +
+                "JOIN FETCH a.mensagem m " +
+                "JOIN FETCH m.usuario " +
+                "WHERE a.sala.id = :salaId AND a.id > :afterId " +
+                "ORDER BY a.id ASC",
+                ChatMensagemAlteracao.class)
+                .setParameter("salaId", salaId)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit != null ? limit : 100)
+                .getResultList();
+    }
+
+    /**
+     * Retorna o ID da última alteração de uma sala
+     * @param salaId ID da sala
+     * @return ID da última alteração, ou 0 se a sala não tiver alterações
+     */
+    public Integer buscarUltimaAlteracaoId(Integer salaId) {
+        Integer ultimo = em.createQuery(
+                "SELECT MAX(a.id) FROM ChatMensagemAlteracao a WHERE a.sala.id = :salaId",
+                Integer.class)
+                .setParameter("salaId", salaId)
+                .getSingleResult();
+        return ultimo != null ? ultimo : 0;
+    }
+
+    private ChatMensagemAlteracao registrarAlteracao(ChatMensagem mensagem, String tipo) {
+        ChatMensagemAlteracao alteracao = new ChatMensagemAlteracao();
+        alteracao.setSala(mensagem.getSala());
+        alteracao.setMensagem(mensagem);
+        alteracao.setTipo(tipo);
+        em.persist(alteracao);
 
-        return inserir(mensagem);
+        // criado_em é preenchido pelo banco; o valor em memória é usado apenas nos eventos ao vivo
+        alteracao.setCriadoEm(new Date());
+        return alteracao;
     }
 
     /**
@@ -75,7 +189,7 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
                     "SELECT m FROM ChatMensagem m " +
                     "JOIN FETCH m.usuario " +
                     "WHERE m.sala.id = :salaId " +
-                    "ORDER BY m.criadoEm DESC",
+                    "ORDER BY m.id DESC",
                     ChatMensagem.class)
                     .setParameter("salaId", salaId)
                     .setMaxResults(1)
@@ -87,6 +201,7 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
 
     /**
      * Lista mensagens anteriores a uma mensagem específica (para paginação/scroll up)
+     * A janela de criado_em descarta as partições posteriores à mensagem de referência
      * @param salaId ID da sala
      * @param beforeId ID da mensagem de referência
      * @param limit Número máximo de mensagens
@@ -96,30 +211,56 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
         return em.createQuery(
                 "SELECT m FROM ChatMensagem m " +
                 "JOIN FETCH m.usuario " +
-                "WHERE m.sala.id = :salaId AND m.id < :beforeId " +
-                "ORDER BY m.criadoEm DESC",
+                "WHERE m.sala.id = :salaId AND m.id < :beforeId AND m.criadoEm < :criadoAte " +
+                "ORDER BY m.id DESC",
                 ChatMensagem.class)
                 .setParameter("salaId", salaId)
                 .setParameter("beforeId", beforeId)
+                .setParameter("criadoAte", ChatParticoes.criadoAte(beforeId), TemporalType.TIMESTAMP)
                 .setMaxResults(limit != null ? limit : 20)
                 .getResultList();
     }
 
     /**
-     * Lista mensagens posteriores a uma mensagem específica (para Long Polling)
+     * Lista mensagens posteriores a uma mensagem específica (para Long Polling e sincronização)
+     * A janela de criado_em descarta as partições anteriores à mensagem de referência
      * @param salaId ID da sala
      * @param afterId ID da mensagem de referência
-     * @return Lista de mensagens (CRIPTOGRAFADAS - descriptografar ao usar)
+     * @param limit Número máximo de mensagens
+     * @return Lista de mensagens em ordem cronológica (CRIPTOGRAFADAS - descriptografar ao usar)
      */
-    public List<ChatMensagem> listarMensagensPosteriores(Integer salaId, Integer afterId) {
+    public List<ChatMensagem> listarMensagensPosteriores(Integer salaId, Integer afterId, Integer limit) {
         return em.createQuery(
                 "SELECT m FROM ChatMensagem m " +
                 "JOIN FETCH m.usuario " +
-                "WHERE m.sala.id = :salaId AND m.id > :afterId " +
-                "ORDER BY m.criadoEm ASC",
+                "WHERE m.sala.id = :salaId AND m.id > :afterId AND m.criadoEm >= :criadoDesde " +
+                "ORDER BY m.id ASC",
                 ChatMensagem.class)
                 .setParameter("salaId", salaId)
                 .setParameter("afterId", afterId)
+                .setParameter("criadoDesde", ChatParticoes.criadoDesde(afterId), TemporalType.TIMESTAMP)
+                .setMaxResults(limit != null ? limit : 100)
+                .getResultList();
+    }
+
+    /**
+     * Lista mensagens de uma sala pelos IDs (resultado da busca no índice em memória)
+     * @param salaId ID da sala
+     * @param ids IDs das mensagens
+     * @return Lista de mensagens da mais nova para a mais antiga (CRIPTOGRAFADAS - descriptografar ao usar)
+     */
+    public List<ChatMensagem> listarPorIds(Integer salaId, List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return em.createQuery(
+                "SELECT m FROM ChatMensagem m " +
+                "JOIN FETCH m.usuario " +
+                "WHERE m.sala.id = :salaId AND m.id IN :ids " +
+                "ORDER BY m.id DESC",
+                ChatMensagem.class)
+                .setParameter("salaId", salaId)
+                .setParameter("ids", ids)
                 .getResultList();
     }
 
@@ -134,7 +275,7 @@ public class ChatMensagemRepository extends AbstractCrudRepository<ChatMensagem>
                 "SELECT m FROM ChatMensagem m " +
                 "JOIN FETCH m.usuario " +
                 "WHERE m.sala.id = :salaId " +
-                "ORDER BY m.criadoEm DESC",
+                "ORDER BY m.id DESC",
                 ChatMensagem.class)
                 .setParameter("salaId", salaId)
                 .setMaxResults(limit != null ? limit : 20)
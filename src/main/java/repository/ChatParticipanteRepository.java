@@ -11,28 +11,38 @@ import model.ChatSala;
 import model.Checkin;
 import model.Usuario;
 import repository.base.AbstractCrudRepository;
+import utils.ChatAcessoCache;
+import utils.ChatMensagensNaoLidas;
 
 @Stateless
 public class ChatParticipanteRepository extends AbstractCrudRepository<ChatParticipante> {
 
     /**
      * Verifica se o usuário tem acesso válido (não expirado) à sala
+     * Consulta o cache de acesso; o banco só é consultado quando o acesso não está em cache.
      * @param usuarioId ID do usuário
      * @param salaId ID da sala
      * @return true se tem acesso válido
      */
     public boolean verificarAcessoValido(Integer usuarioId, Integer salaId) {
+        Boolean emCache = ChatAcessoCache.verificar(usuarioId, salaId);
+        if (emCache != null) {
+            return emCache;
+        }
+
         try {
-            Long count = em.createQuery(
-                    "SELECT COUNT(p) FROM ChatParticipante p " +
+            List<Date> expiracoes = em.createQuery(
+                    "SELECT p.acessoExpiraEm FROM ChatParticipante p " +
                     "WHERE p.usuario.id = :usuarioId " +
-                    "AND p.sala.id = :salaId " +
-                    "AND p.acessoExpiraEm > CURRENT_TIMESTAMP",
-                    Long.class)
+                    "AND p.sala.id = :salaId",
+                    Date.class)
                     .setParameter("usuarioId", usuarioId)
                     .setParameter("salaId", salaId)
-                    .getSingleResult();
-            return count > 0;
+                    .getResultList();
+
+            Long acessoExpiraEm = expiracoes.isEmpty() ? null : expiracoes.get(0).getTime();
+            ChatAcessoCache.registrar(usuarioId, salaId, acessoExpiraEm);
+            return acessoExpiraEm != null && acessoExpiraEm > System.currentTimeMillis();
         } catch (Exception e) {
             return false;
         }
@@ -86,18 +96,36 @@ public class ChatParticipanteRepository extends AbstractCrudRepository<ChatParti
             participante.setAcessoExpiraEm(expiracao);
             participante.setCheckin(checkin);
             atualizar(participante);
+            invalidarAcesso(usuario.getId(), sala.getId());
+
+            // Acesso renovado: participantes expirados não são carregados na subida, então recalcula
+            ChatMensagensNaoLidas.definir(sala.getId(), usuario.getId(),
+                    contarMensagensNaoLidas(usuario.getId(), sala.getId()), expiracao.getTime());
             return participante;
         } else {
-            // Cria novo participante
+            // Cria novo participante (começa com as mensagens anteriores já lidas)
             ChatParticipante participante = new ChatParticipante();
             participante.setSala(sala);
             participante.setUsuario(usuario);
             participante.setCheckin(checkin);
             participante.setAcessoExpiraEm(expiracao);
-            return inserir(participante);
+            participante.setUltimaMensagemLidaId(buscarUltimaMensagemId(sala.getId()));
+            participante = inserir(participante);
+            invalidarAcesso(usuario.getId(), sala.getId());
+            ChatMensagensNaoLidas.registrarParticipante(sala.getId(), usuario.getId(), expiracao.getTime());
+            return participante;
         }
     }
 
+    /**
+     * Descarta o acesso em cache agora e de novo depois do commit: uma verificação concorrente que
+     * ainda leia a expiração antiga não fica registrada no ChatAcessoCache
+     */
+    private void invalidarAcesso(Integer usuarioId, Integer salaId) {
+        ChatAcessoCache.invalidar(usuarioId, salaId);
+        aposTransacao(() -> ChatAcessoCache.invalidar(usuarioId, salaId));
+    }
+
     /**
      * Lista participantes ativos (com acesso não expirado) de uma sala
      * @param salaId ID da sala
@@ -152,5 +180,113 @@ public class ChatParticipanteRepository extends AbstractCrudRepository<ChatParti
             return 0;
         }
     }
-}
 
+    /**
+     * Lista as salas com acesso válido do usuário já com a última mensagem (e autor) e o número
+     * de participantes ativos de cada sala, em uma única consulta (LATERAL JOIN)
+     * As linhas são convertidas (e os textos descriptografados em lote) pelo ChatMensagemConversor.
+     * @param usuarioId ID do usuário
+     * @return Linhas no formato de ChatMensagemConversor.converterSalasDetalhadas (texto ainda criptografado)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> listarSalasDetalhadasDoUsuario(Integer usuarioId) {
+        return em.createNativeQuery(
+                "SELECT s.id, e.id, e.nome, p.acesso_expira_em, " +
+                "       um.mensagem, um.usuario_nome, um.criado_em, ativos.total " +
+                "FROM website.chat_participante p " +
+                "JOIN website.chat_sala s ON s.id = p.sala_id " +
+                "JOIN website.estabelecimento e ON e.id = s.estabelecimento_id " +
+                "LEFT JOIN LATERAL ( " +
+                "    SELECT m.mensagem, u.nome AS usuario_nome, m.criado_em " +
+                "    FROM website.chat_mensagem m " +
+                "    LEFT JOIN website.usuario u ON u.id = m.usuario_id " +
+                "    WHERE m.sala_id = s.id " +
+                "    ORDER BY m.id DESC " +
+                "    LIMIT 1 " +
+                ") um ON TRUE " +
+                "CROSS JOIN LATERAL ( " +
+                "    SELECT COUNT(*) AS total " +
+                "    FROM website.chat_participante pa " +
+                "    WHERE pa.sala_id = s.id AND pa.acesso_expira_em > CURRENT_TIMESTAMP " +
+                ") ativos " +
+                "WHERE p.usuario_id = :usuarioId " +
+                "AND p.acesso_expira_em > CURRENT_TIMESTAMP " +
+                "ORDER BY p.acesso_expira_em DESC")
+                .setParameter("usuarioId", usuarioId)
+                .getResultList();
+    }
+
+    /**
+     * Marca as mensagens de uma sala como lidas até o ID informado (o cursor nunca retrocede)
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     * @param mensagemId ID da última mensagem lida
+     */
+    public void marcarComoLida(Integer usuarioId, Integer salaId, Integer mensagemId) {
+        em.createQuery(
+                "UPDATE ChatParticipante p SET p.ultimaMensagemLidaId = :mensagemId " +
+                "WHERE p.usuario.id = :usuarioId " +
+                "AND p.sala.id = :salaId " +
+                "AND (p.ultimaMensagemLidaId IS NULL OR p.ultimaMensagemLidaId < :mensagemId)")
+                .setParameter("mensagemId", mensagemId)
+                .setParameter("usuarioId", usuarioId)
+                .setParameter("salaId", salaId)
+                .executeUpdate();
+    }
+
+    /**
+     * Conta as mensagens de outros usuários posteriores ao cursor de leitura do participante
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     * @return Mensagens não lidas
+     */
+    public Integer contarMensagensNaoLidas(Integer usuarioId, Integer salaId) {
+        Long count = em.createQuery(
+                "SELECT COUNT(m) FROM ChatMensagem m, ChatParticipante p " +
+                "WHERE p.usuario.id = :usuarioId " +
+                "AND p.sala.id = :salaId " +
+                "AND m.sala.id = p.sala.id " +
+                "AND m.usuario.id <> p.usuario.id " +
+                "AND m.id > COALESCE(p.ultimaMensagemLidaId, 0)",
+                Long.class)
+                .setParameter("usuarioId", usuarioId)
+                .setParameter("salaId", salaId)
+                .getSingleResult();
+        return count.intValue();
+    }
+
+    /**
+     * Carrega os contadores em memória de mensagens não lidas de todos os participantes ativos
+     * (uma única consulta agregada, usada na subida da aplicação)
+     */
+    @SuppressWarnings("unchecked")
+    public void carregarContadoresNaoLidas() {
+        List<Object[]> linhas = em.createNativeQuery(
+                "SELECT p.sala_id, p.usuario_id, COUNT(m.id), p.acesso_expira_em " +
+                "FROM website.chat_participante p " +
+                "LEFT JOIN website.chat_mensagem m ON m.sala_id = p.sala_id " +
+                "    AND m.usuario_id <> p.usuario_id " +
+                "    AND m.id > COALESCE(p.ultima_mensagem_lida_id, 0) " +
+                "WHERE p.acesso_expira_em > CURRENT_TIMESTAMP " +
+                "GROUP BY p.sala_id, p.usuario_id, p.acesso_expira_em")
+                .getResultList();
+
+        for (Object[] linha : linhas) {
+            ChatMensagensNaoLidas.definir(((Number) linha[0]).intValue(), ((Number) linha[1]).intValue(),
+                    ((Number) linha[2]).intValue(), ((Date) linha[3]).getTime());
+        }
+    }
+
+    /**
+     * Retorna o ID da mensagem mais recente de uma sala
+     * @param salaId ID da sala
+     * @return ID da última mensagem ou null se não houver mensagens
+     */
+    public Integer buscarUltimaMensagemId(Integer salaId) {
+        return em.createQuery(
+                "SELECT MAX(m.id) FROM ChatMensagem m WHERE m.sala.id = :salaId",
+                Integer.class)
+                .setParameter("salaId", salaId)
+                .getSingleResult();
+    }
+}
@@ -29,6 +29,22 @@ public class ChatSalaRepository extends AbstractCrudRepository<ChatSala> {
         }
     }
 
+    /**
+     * Busca o ID do proprietário do estabelecimento de uma sala
+     * @param salaId ID da sala
+     * @return Optional com o ID do proprietário (vazio se a sala não existir ou o estabelecimento não tiver proprietário)
+     */
+    public Optional<Integer> buscarProprietarioId(Integer salaId) {
+        return em.createQuery(
+                "SELECT e.proprietario.id FROM ChatSala s " +
+                "JOIN s.estabelecimento e " +
+                "WHERE s.id = :salaId",
+                Integer.class)
+                .setParameter("salaId", salaId)
+                .getResultStream()
+                .findFirst();
+    }
+
     /**
      * Cria uma nova sala de chat para um estabelecimento
      * @param estabelecimento Estabelecimento
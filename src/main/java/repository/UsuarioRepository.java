@@ -4,11 +4,13 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
+import filter.UsuarioPrincipal;
 import jakarta.ejb.Stateless;
 import model.Usuario;
 import model.dto.UsuarioDTO;
 import repository.base.AbstractCrudRepository;
 import utils.BcryptUtil;
+import utils.UsuarioCache;
 
 @Stateless
 public class UsuarioRepository extends AbstractCrudRepository<Usuario> {
@@ -17,6 +19,40 @@ public class UsuarioRepository extends AbstractCrudRepository<Usuario> {
         return Optional.ofNullable(em.find(Usuario.class, id));
     }
     
+    /**
+     * Busca o usuário autenticado: pela chave primária quando o token traz o ID,
+     * pelo e-mail apenas em tokens antigos (sem a claim "uid")
+     * Retorna a cópia somente leitura do UsuarioCache; só consulta o banco se ela não estiver em cache.
+     */
+    public Optional<Usuario> buscarAutenticado(UsuarioPrincipal principal) {
+        Usuario emCache = UsuarioCache.obter(principal.getId());
+        if (emCache != null) {
+            return Optional.of(emCache);
+        }
+        Optional<Usuario> usuario = principal.getId() != null
+            ? buscarPorId(principal.getId())
+            : buscarPorEmail(principal.getEmail());
+        return usuario.map(UsuarioCache::registrar);
+    }
+
+    /**
+     * ID do usuário autenticado, sem consulta quando o token traz o ID
+     */
+    public Optional<Integer> buscarIdAutenticado(UsuarioPrincipal principal) {
+        if (principal.getId() != null) {
+            return Optional.of(principal.getId());
+        }
+        if (principal.getEmail() == null) {
+            return Optional.empty();
+        }
+        return em.createQuery(
+            "select u.id from Usuario u where lower(u.email) = :e", Integer.class)
+            .setParameter("e", principal.getEmail().toLowerCase().trim())
+            .setMaxResults(1)
+            .getResultStream()
+            .findFirst();
+    }
+
     public Optional<Usuario> buscarPorEmail(String email) {
         if (email == null) return Optional.empty();
         String norm = email.toLowerCase().trim();
@@ -54,26 +90,53 @@ public class UsuarioRepository extends AbstractCrudRepository<Usuario> {
             em.persist(u);
             return u;
         }
+        invalidarCache(u.getId());
         return em.merge(u);
     }
     
+    @Override
+    public void atualizar(Usuario u) {
+        invalidarCache(u.getId());
+        super.atualizar(u);
+    }
+    
+    @Override
+    public void remover(Usuario u) {
+        invalidarCache(u.getId());
+        super.remover(u);
+    }
+    
     public void excluir(Usuario u) {
         if (u == null) return;
+        invalidarCache(u.getId());
         Usuario managed = (u.getId() != null) ? em.find(Usuario.class, u.getId()) : null;
         if (managed != null) em.remove(managed);
     }
     
+    /**
+     * Descarta o usuário do UsuarioCache agora (leituras na mesma transação) e de novo depois do commit,
+     * para que uma leitura concorrente do valor antigo não volte ao cache
+     */
+    private void invalidarCache(Integer usuarioId) {
+        UsuarioCache.invalidar(usuarioId);
+        aposTransacao(() -> UsuarioCache.invalidar(usuarioId));
+    }
+    
     /**
      * Atribui um refresh token ao usuário.
+     * Atualiza apenas a coluna refresh_token: um merge da entidade inteira desfaria uma troca de senha ou
+     * edição de perfil confirmada enquanto o login aguardava o BCrypt.
      * A validação de expiração deve ser feita no JWT, não aqui.
      */
-    public void emitirRefreshToken(Usuario u, String refreshToken) {
-        if (u == null) throw new IllegalArgumentException("Usuário obrigatório");
+    public void emitirRefreshToken(Integer usuarioId, String refreshToken) {
+        if (usuarioId == null) throw new IllegalArgumentException("Usuário obrigatório");
         if (refreshToken == null || refreshToken.isBlank()) 
             throw new IllegalArgumentException("Refresh token obrigatório");
         
-        u.setRefreshToken(refreshToken);
-        em.merge(u);
+        em.createQuery("UPDATE Usuario u SET u.refreshToken = :rt WHERE u.id = :id")
+            .setParameter("rt", refreshToken)
+            .setParameter("id", usuarioId)
+            .executeUpdate();
     }
     
     /**
@@ -99,20 +162,7 @@ public class UsuarioRepository extends AbstractCrudRepository<Usuario> {
      * Usa BCrypt para verificação segura de senha.
      */
     public boolean verificarSenha(String senhaFornecida, String senhaArmazenada) {
-        if (senhaFornecida == null || senhaArmazenada == null) {
-            return false;
-        }
-        
-        // Se a senha armazenada não for um hash BCrypt (migração de dados antigos),
-        // compara diretamente e retorna false (forçando atualização)
-        if (!BcryptUtil.isBcryptHash(senhaArmazenada)) {
-            // Para compatibilidade com senhas antigas não criptografadas
-            // você pode retornar senhaFornecida.equals(senhaArmazenada) aqui
-            // mas é mais seguro forçar a atualização da senha
-            return senhaFornecida.equals(senhaArmazenada);
-        }
-        
-        return BcryptUtil.verificarSenha(senhaFornecida, senhaArmazenada);
+        return BcryptUtil.verificarSenhaArmazenada(senhaFornecida, senhaArmazenada);
     }
     
     /**
@@ -4,6 +4,7 @@ import java.lang.reflect.Type;
 import java.util.List;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 
 import java.lang.reflect.ParameterizedType;
 
@@ -12,6 +13,9 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Root;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 
 public abstract class AbstractCrudRepository<T> {
@@ -21,6 +25,9 @@ public abstract class AbstractCrudRepository<T> {
 	@PersistenceContext(unitName = "soloandco")
 	protected EntityManager em;
 
+	@Resource
+	private TransactionSynchronizationRegistry transacoes;
+
 	@PostConstruct
 	@SuppressWarnings("unchecked")
 	public void init() {
@@ -90,6 +97,28 @@ public abstract class AbstractCrudRepository<T> {
 		}
 	}
 
+	/**
+	 * Executa a ação quando a transação atual terminar (commit ou rollback), ou na hora se não houver transação ativa
+	 * Usado para invalidar caches em memória: invalidando antes do commit, outra requisição pode recarregar
+	 * o valor antigo do banco e guardá-lo novamente até o TTL expirar.
+	 */
+	protected void aposTransacao(Runnable acao) {
+		if (transacoes == null || transacoes.getTransactionStatus() != Status.STATUS_ACTIVE) {
+			acao.run();
+			return;
+		}
+		transacoes.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				acao.run();
+			}
+		});
+	}
+
 	public EntityManager getEntityManager() {
 		return this.em;
 	}
@@ -0,0 +1,30 @@
+package repository.providers.api;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+
+public interface NotificacaoChatApi {
+	/**
+	 * Chamado na transação que insere a mensagem, antes de a mensagem receber o ID
+	 * @param em EntityManager da transação
+	 * @param salaId ID da sala
+	 */
+	void antesDeInserir(EntityManager em, Integer salaId);
+
+	/**
+	 * Chamado na transação que insere a mensagem, depois de a mensagem receber o ID
+	 * @param em EntityManager da transação
+	 * @param salaId ID da sala
+	 * @param mensagemId ID da mensagem inserida
+	 */
+	void aposInserir(EntityManager em, Integer salaId, Integer mensagemId);
+
+	void publicar(ChatMensagemResponse mensagem);
+
+	void publicarDemaisInstancias(List<ChatMensagemResponse> mensagens);
+
+	void publicarAlteracao(ChatAlteracaoResponse alteracao);
+}
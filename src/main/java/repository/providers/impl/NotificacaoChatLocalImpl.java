@@ -0,0 +1,42 @@
+package repository.providers.impl;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import repository.providers.annotations.NotificacaoLocal;
+import repository.providers.api.NotificacaoChatApi;
+import utils.ChatNotificador;
+
+/**
+ * Notificação de novas mensagens apenas dentro da JVM (instância única do servidor)
+ */
+@NotificacaoLocal
+public class NotificacaoChatLocalImpl implements NotificacaoChatApi {
+
+	@Override
+	public void antesDeInserir(EntityManager em, Integer salaId) {
+		// Distribuição direta após o commit (publicar)
+	}
+
+	@Override
+	public void aposInserir(EntityManager em, Integer salaId, Integer mensagemId) {
+		// Distribuição direta após o commit (publicar)
+	}
+
+	@Override
+	public void publicar(ChatMensagemResponse mensagem) {
+		ChatNotificador.notificarNovaMensagem(mensagem);
+	}
+
+	@Override
+	public void publicarDemaisInstancias(List<ChatMensagemResponse> mensagens) {
+		// Não há outras instâncias
+	}
+
+	@Override
+	public void publicarAlteracao(ChatAlteracaoResponse alteracao) {
+		ChatNotificador.notificarAlteracao(alteracao);
+	}
+}
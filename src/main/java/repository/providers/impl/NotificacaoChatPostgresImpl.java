@@ -0,0 +1,285 @@
+package repository.providers.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import model.ChatMensagem;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import repository.ChatMensagemRepository;
+import repository.providers.annotations.NotificacaoPostgres;
+import repository.providers.api.NotificacaoChatApi;
+import repository.utilitarios.NotificacaoChatRepository;
+import utils.ChatAlteracoes;
+import utils.ChatMensagemConversor;
+import utils.ChatMensagensRecentesCache;
+import utils.ChatNotificador;
+
+/**
+ * Notificação de novas mensagens entre instâncias do servidor via PostgreSQL LISTEN/NOTIFY
+ * Edições e remoções são distribuídas localmente e publicadas no canal com "no:salaId:alteracaoId:alteracao".
+ * Uma conexão dedicada escuta o canal; notificações que chegam juntas são agrupadas por sala
+ * e as mensagens de cada sala são buscadas com uma única consulta.
+ *
+ * Novas mensagens chegam aos clientes de TODAS as instâncias, inclusive a que gravou, pelo ouvinte:
+ * os cursores (after, Last-Event-ID) supõem que cada instância distribui os IDs de uma sala em ordem
+ * crescente. A transação que insere a mensagem trava a sala (pg_advisory_xact_lock) antes de reservar
+ * o ID e publica "*:salaId:mensagemId" (pg_notify) antes do commit. Assim os commits de uma sala
+ * seguem a ordem dos IDs e o PostgreSQL entrega as notificações na ordem dos commits, igual para
+ * todas as instâncias. Distribuir na hora a mensagem desta instância a adiantaria em relação a uma
+ * mensagem anterior de outra instância ainda a caminho, e o cliente que recebesse a mais nova
+ * avançaria o cursor além da anterior.
+ */
+@NotificacaoPostgres
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class NotificacaoChatPostgresImpl implements NotificacaoChatApi {
+
+	private static final Logger LOGGER = Logger.getLogger(NotificacaoChatPostgresImpl.class.getName());
+
+	private static final String CANAL = "chat_mensagem";
+
+	// Sufixo das notificações de edição/remoção
+	private static final String ALTERACAO = "alteracao";
+
+	// Identifica esta instância, para ignorar as próprias notificações de alterações
+	static final String NO_ID = UUID.randomUUID().toString();
+
+	// No lugar do identificador da instância: notificação distribuída por todas, inclusive a que publicou
+	static final String TODAS = "*";
+
+	// Primeira chave das travas de sala (pg_advisory_xact_lock(chave, salaId))
+	static final int TRAVA_SALA = 1;
+
+	// Espera por notificações a cada iteração do ouvinte
+	private static final int ESPERA_NOTIFICACOES_MS = 500;
+
+	// Janela extra para agrupar rajadas de notificações
+	private static final int JANELA_AGRUPAMENTO_MS = 20;
+
+	// Espera antes de reconectar após falha na conexão de escuta
+	private static final long ESPERA_RECONEXAO_MS = 5000;
+
+	@Resource(lookup = "java:jboss/datasources/soloandco")
+	private DataSource dataSource;
+
+	@Resource
+	private ManagedThreadFactory threadFactory;
+
+	@EJB
+	private ChatMensagemRepository mensagemRepository;
+
+	@Inject
+	@ConfigProperty(name = "chat.notificacao.tipo", defaultValue = NotificacaoChatRepository.NOTIFICACAO_LOCAL)
+	private String tipoNotificacao;
+
+	private volatile boolean ativo;
+
+	private Thread ouvinte;
+
+	@PostConstruct
+	private void iniciar() {
+		if (!NotificacaoChatRepository.NOTIFICACAO_POSTGRES.equalsIgnoreCase(tipoNotificacao)) {
+			return;
+		}
+		ativo = true;
+		ouvinte = threadFactory.newThread(this::escutar);
+		ouvinte.setName("chat-notificacao-postgres");
+		ouvinte.start();
+	}
+
+	@PreDestroy
+	private void parar() {
+		ativo = false;
+		if (ouvinte != null) {
+			ouvinte.interrupt();
+		}
+	}
+
+	/**
+	 * Trava a sala até o fim da transação: a próxima inserção na sala só reserva o ID depois deste commit
+	 */
+	@Override
+	public void antesDeInserir(EntityManager em, Integer salaId) {
+		em.createNativeQuery("SELECT COUNT(*) FROM pg_advisory_xact_lock(?1, ?2)")
+				.setParameter(1, TRAVA_SALA)
+				.setParameter(2, salaId)
+				.getSingleResult();
+	}
+
+	/**
+	 * Publica a mensagem para todas as instâncias na transação que a insere (entregue no commit)
+	 */
+	@Override
+	public void aposInserir(EntityManager em, Integer salaId, Integer mensagemId) {
+		em.createNativeQuery("SELECT COUNT(*) FROM pg_notify(?1, ?2)")
+				.setParameter(1, CANAL)
+				.setParameter(2, TODAS + ":" + salaId + ":" + mensagemId)
+				.getSingleResult();
+	}
+
+	@Override
+	public void publicar(ChatMensagemResponse mensagem) {
+		// Já publicada na transação da inserção (aposInserir): os clientes desta instância também
+		// a recebem pelo ouvinte, na ordem dos commits da sala
+	}
+
+	@Override
+	public void publicarDemaisInstancias(List<ChatMensagemResponse> mensagens) {
+		try (Connection conexao = dataSource.getConnection();
+				PreparedStatement ps = conexao.prepareStatement("SELECT pg_notify(?, ?)")) {
+			for (ChatMensagemResponse mensagem : mensagens) {
+				ps.setString(1, CANAL);
+				ps.setString(2, NO_ID + ":" + mensagem.getSalaId() + ":" + mensagem.getId());
+				ps.execute();
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.WARNING, "Falha ao publicar notificação do chat", e);
+		}
+	}
+
+	@Override
+	public void publicarAlteracao(ChatAlteracaoResponse alteracao) {
+		ChatNotificador.notificarAlteracao(alteracao);
+
+		try (Connection conexao = dataSource.getConnection();
+				PreparedStatement ps = conexao.prepareStatement("SELECT pg_notify(?, ?)")) {
+			ps.setString(1, CANAL);
+			ps.setString(2, NO_ID + ":" + alteracao.getSalaId() + ":" + alteracao.getId() + ":" + ALTERACAO);
+			ps.execute();
+		} catch (SQLException e) {
+			LOGGER.log(Level.WARNING, "Falha ao publicar alteração do chat", e);
+		}
+	}
+
+	private void escutar() {
+		while (ativo) {
+			try (Connection conexao = dataSource.getConnection()) {
+				PGConnection pgConexao = conexao.unwrap(PGConnection.class);
+				try (Statement st = conexao.createStatement()) {
+					st.execute("LISTEN " + CANAL);
+				}
+
+				// Mensagens (de qualquer instância) e alterações podem ter sido perdidas enquanto não havia escuta
+				ChatMensagensRecentesCache.limparTodos();
+				ChatAlteracoes.limparTodos();
+
+				while (ativo) {
+					PGNotification[] notificacoes = pgConexao.getNotifications(ESPERA_NOTIFICACOES_MS);
+					if (notificacoes == null || notificacoes.length == 0) {
+						continue;
+					}
+
+					// IDs de mensagens e de alterações recebidos por sala
+					Map<Integer, TreeSet<Integer>> idsPorSala = new HashMap<>();
+					Map<Integer, TreeSet<Integer>> alteracoesPorSala = new HashMap<>();
+					agrupar(notificacoes, idsPorSala, alteracoesPorSala);
+					PGNotification[] rajada = pgConexao.getNotifications(JANELA_AGRUPAMENTO_MS);
+					if (rajada != null) {
+						agrupar(rajada, idsPorSala, alteracoesPorSala);
+					}
+
+					idsPorSala.forEach(this::distribuirMensagens);
+					alteracoesPorSala.forEach(this::distribuirAlteracoesRemotas);
+				}
+			} catch (SQLException e) {
+				if (!ativo) {
+					return;
+				}
+				LOGGER.log(Level.WARNING, "Conexão de escuta do chat perdida, reconectando", e);
+				try {
+					Thread.sleep(ESPERA_RECONEXAO_MS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Separa as notificações em IDs de mensagens e de alterações por sala
+	 * Ignora as publicadas por esta instância com o seu identificador (já distribuídas aqui).
+	 */
+	static void agrupar(PGNotification[] notificacoes, Map<Integer, TreeSet<Integer>> idsPorSala,
+			Map<Integer, TreeSet<Integer>> alteracoesPorSala) {
+		for (PGNotification notificacao : notificacoes) {
+			String[] partes = notificacao.getParameter().split(":");
+			boolean alteracao = partes.length == 4 && ALTERACAO.equals(partes[3]);
+			if ((partes.length != 3 && !alteracao) || NO_ID.equals(partes[0])) {
+				continue;
+			}
+			try {
+				Integer salaId = Integer.valueOf(partes[1]);
+				Integer id = Integer.valueOf(partes[2]);
+				(alteracao ? alteracoesPorSala : idsPorSala).computeIfAbsent(salaId, k -> new TreeSet<>()).add(id);
+			} catch (NumberFormatException e) {
+				LOGGER.log(Level.WARNING, "Notificação do chat inválida: {0}", notificacao.getParameter());
+			}
+		}
+	}
+
+	/**
+	 * Busca de uma vez as mensagens notificadas de uma sala e distribui aos clientes locais, em ordem de ID
+	 * Não há mensagens pendentes de gravação em lote a juntar: com esta notificação a gravação em lote
+	 * fica desativada (ChatMensagemLoteRepository) e as instâncias só publicam mensagens já gravadas.
+	 */
+	private void distribuirMensagens(Integer salaId, TreeSet<Integer> ids) {
+		try {
+			// IDs vêm da sequence: o intervalo first..last tem no máximo last - first + 1 mensagens
+			int limite = ids.last() - ids.first() + 1;
+			for (ChatMensagem mensagem : mensagemRepository.listarMensagensPosteriores(salaId, ids.first() - 1, limite)) {
+				// As demais do intervalo tiveram commit antes (trava da sala) e já foram notificadas
+				if (ids.contains(mensagem.getId())) {
+					ChatNotificador.notificarNovaMensagem(ChatMensagemConversor.converterParaResponse(mensagem));
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Falha ao distribuir mensagens da sala " + salaId, e);
+		}
+	}
+
+	/**
+	 * Busca de uma vez as alterações recebidas de outras instâncias e distribui aos clientes locais
+	 */
+	private void distribuirAlteracoesRemotas(Integer salaId, TreeSet<Integer> ids) {
+		try {
+			int limite = ids.last() - ids.first() + 1;
+			for (ChatAlteracaoResponse alteracao : ChatMensagemConversor.converterAlteracoes(
+					mensagemRepository.listarAlteracoesPosteriores(salaId, ids.first() - 1, limite))) {
+				if (ids.contains(alteracao.getId())) {
+					ChatNotificador.notificarAlteracao(alteracao);
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Falha ao distribuir alterações remotas da sala " + salaId, e);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package repository.utilitarios;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import repository.providers.annotations.NotificacaoLocal;
+import repository.providers.annotations.NotificacaoPostgres;
+import repository.providers.api.NotificacaoChatApi;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Stateless
+public class NotificacaoChatRepository {
+
+	private static final Logger LOGGER = Logger.getLogger(NotificacaoChatRepository.class.getName());
+
+	public static final String NOTIFICACAO_LOCAL = "local";
+	public static final String NOTIFICACAO_POSTGRES = "postgres";
+
+	private NotificacaoChatApi notificacaoChatApi;
+
+	@Inject
+	@NotificacaoLocal
+	private NotificacaoChatApi apiLocal;
+
+	@Inject
+	@NotificacaoPostgres
+	private NotificacaoChatApi apiPostgres;
+
+	@Inject
+	@ConfigProperty(name = "chat.notificacao.tipo", defaultValue = NOTIFICACAO_LOCAL)
+	private String tipoNotificacao;
+
+	@PostConstruct
+	private void postConstruct() {
+		if (NOTIFICACAO_POSTGRES.equalsIgnoreCase(tipoNotificacao)) {
+			notificacaoChatApi = apiPostgres;
+		} else {
+			if (!NOTIFICACAO_LOCAL.equalsIgnoreCase(tipoNotificacao)) {
+				LOGGER.log(Level.SEVERE, "Propriedade chat.notificacao.tipo inválida: {0}", tipoNotificacao);
+			}
+			notificacaoChatApi = apiLocal;
+		}
+	}
+
+	/**
+	 * Prepara a inserção de uma mensagem, na transação que a insere e antes de ela receber o ID
+	 * (com PostgreSQL, ordena as inserções da sala entre as instâncias)
+	 * @param em EntityManager da transação
+	 * @param salaId ID da sala
+	 */
+	public void antesDeInserir(EntityManager em, Integer salaId) {
+		notificacaoChatApi.antesDeInserir(em, salaId);
+	}
+
+	/**
+	 * Registra a mensagem inserida na transação que a insere (com PostgreSQL, a notificação às instâncias
+	 * sai no commit, na mesma ordem dos commits)
+	 * @param em EntityManager da transação
+	 * @param salaId ID da sala
+	 * @param mensagemId ID da mensagem inserida
+	 */
+	public void aposInserir(EntityManager em, Integer salaId, Integer mensagemId) {
+		notificacaoChatApi.aposInserir(em, salaId, mensagemId);
+	}
+
+	/**
+	 * Publica uma nova mensagem para todos os clientes conectados na sala, em todas as instâncias
+	 * Chamado depois do commit da inserção.
+	 * @param mensagem Mensagem já persistida e descriptografada
+	 */
+	public void publicar(ChatMensagemResponse mensagem) {
+		notificacaoChatApi.publicar(mensagem);
+	}
+
+	/**
+	 * Avisa as demais instâncias sobre mensagens já distribuídas localmente (ex.: após gravação em lote)
+	 * @param mensagens Mensagens já persistidas e descriptografadas
+	 */
+	public void publicarDemaisInstancias(List<ChatMensagemResponse> mensagens) {
+		notificacaoChatApi.publicarDemaisInstancias(mensagens);
+	}
+
+	/**
+	 * Publica uma edição ou remoção de mensagem para todos os clientes conectados na sala, em todas as instâncias
+	 * @param alteracao Alteração já persistida, com o estado atual da mensagem descriptografado
+	 */
+	public void publicarAlteracao(ChatAlteracaoResponse alteracao) {
+		notificacaoChatApi.publicarAlteracao(alteracao);
+	}
+}
@@ -3,11 +3,16 @@ package services;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -22,6 +27,7 @@ import repository.AuthRepository;
 import repository.ResendEmailRepository;
 import repository.TokenRecuperacaoSenhaRepository;
 import repository.UsuarioRepository;
+import utils.BcryptExecutor;
 import utils.BcryptUtil;
 import utils.email.TemplateEmailRecuperacaoDeSenha;
 
@@ -42,11 +48,48 @@ public class AuthService {
     @Inject
     private ResendEmailRepository emailService;
 
+    @EJB
+    private BcryptExecutor bcryptExecutor;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    /**
+     * POST /auth/login
+     * A verificação BCrypt roda no BcryptExecutor (limitado aos núcleos, com fila): a thread da requisição
+     * é liberada e uma rajada de logins não disputa CPU com o restante da API. Fila cheia: 503 + Retry-After.
+     */
     @POST
     @Path("/login")
-    public Response login(LoginRequest loginRequest) {
-        // O ExceptionMapper vai tratar automaticamente o NotAuthorizedException
-        return Response.ok().entity(authRepository.login(loginRequest.getEmail(), loginRequest.getSenha())).build();
+    public void login(LoginRequest loginRequest, @Suspended AsyncResponse asyncResponse) {
+        // O ExceptionMapper vai tratar automaticamente o NotAuthorizedException (também via resume)
+        Usuario usuario;
+        try {
+            usuario = authRepository.buscarParaLogin(loginRequest.getEmail());
+        } catch (Exception e) {
+            asyncResponse.resume(e);
+            return;
+        }
+
+        String senha = loginRequest.getSenha();
+        try {
+            bcryptExecutor.executar(() -> BcryptUtil.verificarSenhaArmazenada(senha, usuario.getSenha()))
+                    .thenApplyAsync(senhaCorreta -> {
+                        if (!senhaCorreta) {
+                            throw new NotAuthorizedException("Email ou senha incorretos");
+                        }
+                        return authRepository.emitirTokens(usuario);
+                    }, executor)
+                    .whenComplete((token, erro) -> {
+                        if (erro != null) {
+                            asyncResponse.resume(BcryptExecutor.causa(erro));
+                        } else {
+                            asyncResponse.resume(Response.ok().entity(token).build());
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            asyncResponse.resume(BcryptExecutor.respostaOcupado());
+        }
     }
 
     @POST
@@ -1,26 +1,82 @@
 package services;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import filter.UsuarioAtual;
 import model.*;
 import model.dto.*;
 import repository.*;
+import repository.utilitarios.NotificacaoChatRepository;
+import utils.ChatAlteracoes;
+import utils.ChatBuscaIndice;
+import utils.ChatExportacao;
+import utils.ChatLimiteEnvio;
 import utils.ChatLongPollingManager;
+import utils.ChatMensagemConversor;
+import utils.ChatMensagensRecentesCache;
+import utils.ChatMensagensNaoLidas;
+import utils.ChatPresenca;
+import utils.ChatSalaHub;
+import utils.ChatSseManager;
 
 @Path("/chat")
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 public class ChatService {
 
+    // Máximo de mensagens por resposta de sincronização (after)
+    private static final int LIMITE_SINCRONIZACAO = 100;
+
+    // Header indicando que há mais mensagens após a página retornada
+    private static final String HEADER_HAS_MORE = "X-Has-More";
+
+    // Header com o cursor de alterações (edições/remoções) após a resposta
+    private static final String HEADER_ULTIMA_ALTERACAO = "X-Ultima-Alteracao";
+
+    // Mensagens descriptografadas por consulta ao montar o índice de busca de uma sala
+    private static final int TAMANHO_PAGINA_INDICE = 500;
+
+    // Mensagens por consulta na exportação do histórico e tamanho dos buffers de escrita
+    private static final int TAMANHO_PAGINA_EXPORTACAO = 1000;
+    private static final int TAMANHO_BUFFER_EXPORTACAO = 64 * 1024;
+
+    // Consultas ao banco de mensagens posteriores a um cursor (fora do cache de recentes), para as métricas
+    private static final LongAdder consultasPosteriores = new LongAdder();
+
     @Inject
     private ChatSalaRepository salaRepository;
 
@@ -31,11 +87,23 @@ public class ChatService {
     private ChatParticipanteRepository participanteRepository;
 
     @Inject
-    private UsuarioRepository usuarioRepository;
+    private ChatMensagemLoteRepository mensagemLoteRepository;
+
+    @Inject
+    private UsuarioAtual usuarioAtual;
 
     @Inject
     private EstabelecimentoRepository estabelecimentoRepository;
 
+    @Inject
+    private NotificacaoChatRepository notificacaoRepository;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Resource
+    private ManagedScheduledExecutorService agendador;
+
     /**
      * POST /chat/salas/{estabelecimentoId}/entrar
      * Entra em uma sala de chat do estabelecimento (verifica check-in válido)
@@ -46,14 +114,14 @@ public class ChatService {
                                   @Context SecurityContext sc) {
         try {
             // Valida autenticação
-            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
 
             // Valida estabelecimento
             Optional<Estabelecimento> estabelecimentoOpt = estabelecimentoRepository.buscarAtivoPorId(estabelecimentoId);
@@ -69,9 +137,9 @@ public class ChatService {
             ChatSala sala = salaRepository.buscarOuCriar(estabelecimento);
 
             // Verifica se já tem acesso válido
-            if (participanteRepository.verificarAcessoValido(usuario.getId(), sala.getId())) {
+            if (participanteRepository.verificarAcessoValido(usuarioId, sala.getId())) {
                 // Já tem acesso, retorna informações da sala
-                ChatSalaResponse response = montarSalaResponse(sala, usuario.getId());
+                ChatSalaResponse response = montarSalaResponse(sala, usuarioId);
                 return Response.ok(response).build();
             }
 
@@ -104,17 +172,17 @@ public class ChatService {
                                      @Context SecurityContext sc) {
         try {
             // Valida autenticação
-            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
 
             // Valida acesso à sala
-            if (!participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
+            if (!participanteRepository.verificarAcessoValido(usuarioId, salaId)) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
                         .build();
@@ -123,27 +191,27 @@ public class ChatService {
             // Define limite (padrão 20, máximo 100)
             int limiteConsulta = (limit != null && limit > 0 && limit <= 100) ? limit : 20;
             
-            List<ChatMensagem> mensagens;
+            List<ChatMensagemResponse> response;
             
             // Determina o tipo de consulta baseado nos parâmetros
             if (before != null) {
                 // Scroll up: buscar mensagens anteriores (mais antigas)
-                mensagens = mensagemRepository.listarMensagensAnteriores(salaId, before, limiteConsulta);
+                List<ChatMensagem> mensagens = mensagemRepository.listarMensagensAnteriores(salaId, before, limiteConsulta);
                 // Reverter ordem para cronológica (mais antiga primeiro)
                 java.util.Collections.reverse(mensagens);
+                response = ultimas(mensagemLoteRepository.mesclarPendentes(salaId,
+                        ChatMensagemConversor.converterLote(mensagens), null, before), limiteConsulta);
             } else if (after != null) {
-                // Sincronização: buscar mensagens novas após um ponto
-                mensagens = mensagemRepository.listarMensagensPosteriores(salaId, after);
+                // Sincronização: buscar mensagens novas após um ponto (memória ou banco), limitada por página
+                return respostaPosteriores(listarPosteriores(salaId, after));
             } else {
-                // Carregamento inicial: últimas N mensagens
-                mensagens = mensagemRepository.listarUltimasMensagens(salaId, limiteConsulta);
+                // Carregamento inicial: últimas N mensagens (memória ou banco)
+                response = ChatMensagensRecentesCache.listarUltimas(salaId, limiteConsulta, carregadorRecentes(salaId))
+                        .orElseGet(() -> ultimas(mensagemLoteRepository.mesclarPendentes(salaId,
+                                ChatMensagemConversor.converterLote(mensagemRepository.listarUltimasMensagens(salaId, limiteConsulta)),
+                                null, null), limiteConsulta));
             }
 
-            // Converte para DTO descriptografando
-            List<ChatMensagemResponse> response = mensagens.stream()
-                    .map(this::converterParaMensagemResponse)
-                    .collect(Collectors.toList());
-
             return Response.ok(response).build();
 
         } catch (Exception e) {
@@ -154,75 +222,323 @@ public class ChatService {
         }
     }
 
+    /**
+     * GET /chat/salas/{salaId}/mensagens/busca?q={texto}&before={mensagemId}&limit={n}
+     * Busca mensagens da sala que contenham todas as palavras informadas (cada palavra como prefixo)
+     * Resultado da mais recente para a mais antiga; before pagina a partir do último ID recebido
+     */
+    @GET
+    @Path("/salas/{salaId}/mensagens/busca")
+    public Response buscarMensagens(@PathParam("salaId") Integer salaId,
+                                    @QueryParam("q") String q,
+                                    @QueryParam("before") Integer before,
+                                    @QueryParam("limit") Integer limit,
+                                    @Context SecurityContext sc) {
+        try {
+            // Valida parâmetro obrigatório
+            if (ChatBuscaIndice.extrairTermos(q).isEmpty()) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Informe ao menos uma palavra com " + ChatBuscaIndice.TAMANHO_MINIMO_TERMO
+                                + " ou mais caracteres\"}")
+                        .build();
+            }
+
+            // Valida autenticação
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuarioIdOpt.get(), salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            // Define limite (padrão 20, máximo 100)
+            int limiteConsulta = (limit != null && limit > 0 && limit <= 100) ? limit : 20;
+
+            // Busca um ID além do limite para saber se há mais páginas
+            List<Integer> ids = ChatBuscaIndice.buscar(salaId, q, before, limiteConsulta + 1, carregadorBusca(salaId));
+            boolean temMais = ids.size() > limiteConsulta;
+            if (temMais) {
+                ids = ids.subList(0, limiteConsulta);
+            }
+
+            List<ChatMensagemResponse> response = new ArrayList<>(
+                    ChatMensagemConversor.converterLote(mensagemRepository.listarPorIds(salaId, ids)));
+
+            // Mensagens aceitas pela gravação em lote que ainda não chegaram ao banco. Um lote gravado
+            // entre as duas consultas aparece nas duas: a do banco prevalece e o ID entra uma única vez
+            Set<Integer> encontrados = new HashSet<>(ids);
+            response.forEach(m -> encontrados.remove(m.getId()));
+            mensagemLoteRepository.listarPendentes(salaId).stream()
+                    .filter(m -> encontrados.remove(m.getId()))
+                    .forEach(response::add);
+            response.sort((a, b) -> b.getId().compareTo(a.getId()));
+
+            // Removida durante a montagem do índice (o texto antigo pode ter sido indexado)
+            response.removeIf(m -> m.getRemovidoEm() != null);
+
+            return Response.ok(response).header(HEADER_HAS_MORE, temMais).build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao buscar mensagens: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * GET /chat/salas/{salaId}/exportar?formato={ndjson|csv}
+     * Exporta todo o histórico da sala como arquivo gzip (apenas o proprietário do estabelecimento)
+     * O arquivo é gerado durante o envio, página a página (keyset), com memória constante
+     */
+    @GET
+    @Path("/salas/{salaId}/exportar")
+    @Produces("application/gzip")
+    public Response exportarMensagens(@PathParam("salaId") Integer salaId,
+                                      @QueryParam("formato") @DefaultValue(ChatExportacao.FORMATO_NDJSON) String formato,
+                                      @Context SecurityContext sc) {
+        if (!ChatExportacao.FORMATO_NDJSON.equals(formato) && !ChatExportacao.FORMATO_CSV.equals(formato)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Formato inválido (use ndjson ou csv)\"}")
+                    .build();
+        }
+
+        // Valida autenticação
+        Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+        if (usuarioIdOpt.isEmpty()) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Usuário não autenticado\"}")
+                    .build();
+        }
+
+        if (salaRepository.consultar(salaId) == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Sala não encontrada\"}")
+                    .build();
+        }
+
+        // Apenas o proprietário do estabelecimento
+        Optional<Integer> proprietarioId = salaRepository.buscarProprietarioId(salaId);
+        if (proprietarioId.isEmpty() || !proprietarioId.get().equals(usuarioIdOpt.get())) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Apenas o proprietário do estabelecimento pode exportar as mensagens\"}")
+                    .build();
+        }
+
+        StreamingOutput arquivo = output -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(output, TAMANHO_BUFFER_EXPORTACAO);
+            Writer saida = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), TAMANHO_BUFFER_EXPORTACAO);
+            ChatExportacao.escreverInicio(formato, saida);
+
+            // Keyset: cada página começa após o último ID da anterior; nada além da página fica em memória
+            int ultimoId = 0;
+            while (true) {
+                List<ChatMensagem> pagina = mensagemRepository.listarMensagensPosteriores(salaId, ultimoId, TAMANHO_PAGINA_EXPORTACAO);
+                if (pagina.isEmpty()) {
+                    break;
+                }
+                ChatExportacao.escrever(formato, ChatMensagemConversor.converterLote(pagina), saida);
+                ultimoId = pagina.get(pagina.size() - 1).getId();
+            }
+
+            saida.flush();
+            gzip.finish();
+        };
+
+        return Response.ok(arquivo)
+                .header("Content-Disposition", "attachment; filename=\"sala-" + salaId + "." + formato + ".gz\"")
+                .build();
+    }
+
     /**
      * GET /chat/salas/{salaId}/mensagens/poll
      * Long Polling: aguarda até 30 segundos por novas mensagens após um ID específico
+     * A requisição é suspensa (AsyncResponse), liberando a thread do container durante a espera
      * @param after ID da última mensagem recebida pelo cliente (obrigatório)
+     * @param alteracoesAfter ID da última alteração (edição/remoção) recebida; se informado, a requisição
+     *                        também é respondida com as mensagens alteradas após esse cursor
      */
     @GET
     @Path("/salas/{salaId}/mensagens/poll")
-    public Response longPollMensagens(@PathParam("salaId") Integer salaId,
-                                       @QueryParam("after") Integer after,
-                                       @Context SecurityContext sc) {
+    public void longPollMensagens(@PathParam("salaId") Integer salaId,
+                                  @QueryParam("after") Integer after,
+                                  @QueryParam("alteracoesAfter") Integer alteracoesAfter,
+                                  @Context SecurityContext sc,
+                                  @Suspended AsyncResponse asyncResponse) {
         try {
             // Valida parâmetro obrigatório
             if (after == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST)
                         .entity("{\"error\":\"Parâmetro 'after' é obrigatório para Long Polling\"}")
-                        .build();
+                        .build());
+                return;
             }
 
             // Valida autenticação
             Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
             if (usuarioOpt.isEmpty()) {
-                return Response.status(Response.Status.UNAUTHORIZED)
+                asyncResponse.resume(Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
-                        .build();
+                        .build());
+                return;
             }
 
             Usuario usuario = usuarioOpt.get();
 
             // Valida acesso à sala
             if (!participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
-                return Response.status(Response.Status.FORBIDDEN)
+                asyncResponse.resume(Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
-                        .build();
+                        .build());
+                return;
             }
 
+            // Cada requisição de Long Polling mantém o usuário online na sala
+            ChatPresenca.sinal(salaId, usuario.getId(), usuario.getNome());
+
+            // Geração lida ANTES da consulta: se uma notificação chegar entre a consulta e o registro,
+            // o registro percebe e busca novamente em vez de aguardar
+            long geracao = ChatLongPollingManager.geracaoAtual(salaId);
+
             // Verifica imediatamente se já há novas mensagens
-            List<ChatMensagem> mensagensNovas = mensagemRepository.listarMensagensPosteriores(salaId, after);
-            
+            List<ChatMensagemResponse> mensagensNovas = listarPosteriores(salaId, after);
             if (!mensagensNovas.isEmpty()) {
-                // Já tem mensagens novas, retorna imediatamente
-                List<ChatMensagemResponse> response = mensagensNovas.stream()
-                        .map(this::converterParaMensagemResponse)
-                        .collect(Collectors.toList());
-                return Response.ok(response).build();
+                // Já tem mensagens novas, responde imediatamente
+                asyncResponse.resume(respostaPosteriores(mensagensNovas));
+                return;
             }
 
-            // Não tem mensagens novas ainda, aguarda até 30 segundos
-            boolean notificado = ChatLongPollingManager.aguardarComTimeout(salaId, 30, TimeUnit.SECONDS);
-            
-            if (notificado) {
-                // Foi notificado, busca as novas mensagens
-                mensagensNovas = mensagemRepository.listarMensagensPosteriores(salaId, after);
-                List<ChatMensagemResponse> response = mensagensNovas.stream()
-                        .map(this::converterParaMensagemResponse)
-                        .collect(Collectors.toList());
-                return Response.ok(response).build();
-            } else {
-                // Timeout: retorna array vazio
-                return Response.ok(List.of()).build();
+            // Depois das novas mensagens, as edições/remoções posteriores ao cursor do cliente
+            List<ChatAlteracaoResponse> alteracoes = listarAlteracoesPosteriores(salaId, alteracoesAfter);
+            if (!alteracoes.isEmpty()) {
+                asyncResponse.resume(respostaAlteracoes(alteracoes, after));
+                return;
             }
 
+            // Aguarda. Se a notificação trouxer o corpo pronto (cliente só não tem a nova mensagem),
+            // responde sem consultar; quando notificado, a busca roda no executor gerenciado
+            ChatLongPollingManager.aguardarMensagens(salaId, asyncResponse, after, geracao, 30, TimeUnit.SECONDS,
+                    (ar, corpo) -> executor.execute(() -> ar.resume(corpo != null
+                            ? Response.ok(corpo, MediaType.APPLICATION_JSON).header(HEADER_HAS_MORE, false).build()
+                            : buscarMensagensPosteriores(salaId, after, alteracoesAfter))));
+
+            // Caso contrário a requisição continua suspensa até notificação ou timeout (array vazio)
+
         } catch (Exception e) {
             e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+            asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\":\"Erro no Long Polling: " + e.getMessage() + "\"}")
-                    .build();
+                    .build());
         }
     }
 
+    /**
+     * GET /chat/salas/{salaId}/stream
+     * Server-Sent Events: mantém uma conexão aberta e envia cada nova mensagem da sala como evento
+     * O acesso é verificado uma única vez por conexão; a conexão é encerrada quando o acesso expira
+     * @param lastEventId ID da última mensagem recebida (header Last-Event-ID enviado pelo navegador ao reconectar)
+     * @param after Alternativa ao header para a primeira conexão
+     * @param alteracoesAfter ID da última alteração (edição/remoção) recebida; reenvia as posteriores
+     */
+    @GET
+    @Path("/salas/{salaId}/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamMensagens(@PathParam("salaId") Integer salaId,
+                                @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) Integer lastEventId,
+                                @QueryParam("after") Integer after,
+                                @QueryParam("alteracoesAfter") Integer alteracoesAfter,
+                                @Context SecurityContext sc,
+                                @Context SseEventSink sink,
+                                @Context Sse sse) {
+        // Valida autenticação
+        Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
+        if (usuarioOpt.isEmpty()) {
+            throw new WebApplicationException(Response.status(Response.Status.UNAUTHORIZED)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Usuário não autenticado\"}")
+                    .build());
+        }
+
+        Usuario usuario = usuarioOpt.get();
+
+        // Valida acesso à sala (uma vez por conexão)
+        Optional<ChatParticipante> participanteOpt = participanteRepository.buscarParticipante(usuario.getId(), salaId);
+        if (participanteOpt.isEmpty() || !participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
+            throw new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                    .build());
+        }
+
+        // Encerra a conexão quando o acesso à sala expirar (cancelado quando a conexão fecha antes)
+        long restanteMs = participanteOpt.get().getAcessoExpiraEm().getTime() - System.currentTimeMillis();
+        ScheduledFuture<?> expiracao = agendador.schedule(sink::close, Math.max(restanteMs, 0), TimeUnit.MILLISECONDS);
+
+        // Retomada: reenvia as mensagens posteriores ao último evento recebido e as edições/remoções
+        // posteriores ao cursor de alterações, antes de qualquer evento novo
+        Integer ultimoId = reenviarMensagens(salaId, lastEventId != null ? lastEventId : after, sink, sse);
+        Integer ultimaAlteracao = reenviarAlteracoes(salaId, alteracoesAfter, sink, sse);
+
+        ChatSseManager.registrar(salaId, sse, sink, expiracao);
+        ChatPresenca.conectar(salaId, usuario.getId(), usuario.getNome(), () -> !sink.isClosed());
+
+        // O que foi gravado entre o reenvio e o registro (o cliente descarta duplicadas pelo ID)
+        reenviarMensagens(salaId, ultimoId, sink, sse);
+        reenviarAlteracoes(salaId, ultimaAlteracao, sink, sse);
+    }
+
+    /**
+     * Envia pela conexão SSE as mensagens posteriores ao cursor, página a página
+     * @return ID da última mensagem enviada (o próprio cursor se não houver nenhuma)
+     */
+    private Integer reenviarMensagens(Integer salaId, Integer cursor, SseEventSink sink, Sse sse) {
+        while (cursor != null && !sink.isClosed()) {
+            List<ChatMensagemResponse> pagina = listarPosteriores(salaId, cursor);
+            for (ChatMensagemResponse mensagem : pagina) {
+                sink.send(ChatSseManager.criarEvento(sse, mensagem));
+            }
+            if (!pagina.isEmpty()) {
+                cursor = pagina.get(pagina.size() - 1).getId();
+            }
+            // Página incompleta: histórico reenviado por inteiro
+            if (pagina.size() <= LIMITE_SINCRONIZACAO) {
+                break;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Envia pela conexão SSE as edições/remoções posteriores ao cursor de alterações, página a página
+     * @return ID da última alteração enviada (o próprio cursor se não houver nenhuma)
+     */
+    private Integer reenviarAlteracoes(Integer salaId, Integer cursor, SseEventSink sink, Sse sse) {
+        while (cursor != null && !sink.isClosed()) {
+            List<ChatAlteracaoResponse> pagina = listarAlteracoesPosteriores(salaId, cursor);
+            for (ChatAlteracaoResponse alteracao : pagina) {
+                sink.send(ChatSseManager.criarEventoAlteracao(sse, alteracao));
+            }
+            if (!pagina.isEmpty()) {
+                cursor = pagina.get(pagina.size() - 1).getId();
+            }
+            if (pagina.size() <= LIMITE_SINCRONIZACAO) {
+                break;
+            }
+        }
+        return cursor;
+    }
+
     /**
      * POST /chat/salas/{salaId}/mensagens
      * Envia uma mensagem em uma sala (requer acesso válido)
@@ -263,6 +579,15 @@ public class ChatService {
                         .build();
             }
 
+            // Limite de envio por usuário e por sala (depois do acesso: quem não participa não consome o limite da sala)
+            long aguardarSegundos = ChatLimiteEnvio.consumir(usuario.getId(), salaId);
+            if (aguardarSegundos > 0) {
+                return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, aguardarSegundos)
+                        .entity("{\"error\":\"Muitas mensagens em pouco tempo, aguarde para enviar novamente\"}")
+                        .build();
+            }
+
             // Busca sala
             ChatSala sala = salaRepository.consultar(salaId);
             if (sala == null) {
@@ -271,14 +596,20 @@ public class ChatService {
                         .build();
             }
 
+            // Gravação em lote (se ativa): a mensagem já é distribuída e será gravada em seguida
+            Optional<ChatMensagemResponse> aceita = mensagemLoteRepository.enfileirar(sala, usuario, request.getMensagem());
+            if (aceita.isPresent()) {
+                return Response.status(Response.Status.CREATED).entity(aceita.get()).build();
+            }
+
             // Insere mensagem (criptografada automaticamente)
             ChatMensagem mensagem = mensagemRepository.inserirMensagem(sala, usuario, request.getMensagem());
 
-            // Notifica threads aguardando por mensagens nesta sala (Long Polling)
-            ChatLongPollingManager.notificarNovaMensagem(salaId);
+            // Resposta descriptografada
+            ChatMensagemResponse response = ChatMensagemConversor.converterParaResponse(mensagem);
 
-            // Retorna resposta descriptografada
-            ChatMensagemResponse response = converterParaMensagemResponse(mensagem);
+            // Distribui para os clientes conectados na sala (Long Polling, SSE e WebSocket), em todas as instâncias
+            notificacaoRepository.publicar(response);
 
             return Response.status(Response.Status.CREATED).entity(response).build();
 
@@ -290,6 +621,201 @@ public class ChatService {
         }
     }
 
+    /**
+     * PUT /chat/salas/{salaId}/mensagens/{mensagemId}
+     * Edita o texto de uma mensagem (apenas o autor, com acesso válido à sala)
+     * A alteração é distribuída como evento "alteracao" (SSE/WebSocket) e pelo cursor alteracoesAfter (Long Polling)
+     */
+    @PUT
+    @Path("/salas/{salaId}/mensagens/{mensagemId}")
+    public Response editarMensagem(@PathParam("salaId") Integer salaId,
+                                   @PathParam("mensagemId") Integer mensagemId,
+                                   ChatMensagemRequest request,
+                                   @Context SecurityContext sc) {
+        // Valida request
+        if (request == null || request.getMensagem() == null || request.getMensagem().trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Mensagem é obrigatória\"}")
+                    .build();
+        }
+
+        if (request.getMensagem().length() > 1000) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Mensagem muito longa (máximo 1000 caracteres)\"}")
+                    .build();
+        }
+
+        return alterarMensagem(salaId, mensagemId, request.getMensagem(), sc);
+    }
+
+    /**
+     * DELETE /chat/salas/{salaId}/mensagens/{mensagemId}
+     * Remove uma mensagem (apenas o autor): o texto é descartado e a mensagem fica como marcador
+     */
+    @DELETE
+    @Path("/salas/{salaId}/mensagens/{mensagemId}")
+    public Response removerMensagem(@PathParam("salaId") Integer salaId,
+                                    @PathParam("mensagemId") Integer mensagemId,
+                                    @Context SecurityContext sc) {
+        return alterarMensagem(salaId, mensagemId, null, sc);
+    }
+
+    /**
+     * GET /chat/salas/{salaId}/alteracoes?after={alteracaoId}
+     * Lista as edições e remoções posteriores ao cursor, com o estado atual de cada mensagem
+     * (sincronização de clientes WebSocket ou ao abrir a sala; Long Polling e SSE recebem pelo próprio transporte)
+     */
+    @GET
+    @Path("/salas/{salaId}/alteracoes")
+    public Response listarAlteracoes(@PathParam("salaId") Integer salaId,
+                                     @QueryParam("after") Integer after,
+                                     @Context SecurityContext sc) {
+        try {
+            // Valida parâmetro obrigatório
+            if (after == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Parâmetro 'after' é obrigatório\"}")
+                        .build();
+            }
+
+            // Valida autenticação
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuarioIdOpt.get(), salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            List<ChatAlteracaoResponse> alteracoes = listarAlteracoesPosteriores(salaId, after);
+            boolean temMais = alteracoes.size() > LIMITE_SINCRONIZACAO;
+            return Response.ok(temMais ? alteracoes.subList(0, LIMITE_SINCRONIZACAO) : alteracoes)
+                    .header(HEADER_HAS_MORE, temMais)
+                    .build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao listar alterações: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * POST /chat/salas/{salaId}/lidas?ate={mensagemId}
+     * Marca as mensagens da sala como lidas (até a mensagem informada ou até a mais recente)
+     */
+    @POST
+    @Path("/salas/{salaId}/lidas")
+    public Response marcarComoLidas(@PathParam("salaId") Integer salaId,
+                                    @QueryParam("ate") Integer ate,
+                                    @Context SecurityContext sc) {
+        try {
+            // Valida autenticação
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            Integer usuarioId = usuarioIdOpt.get();
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuarioId, salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            Integer ultimaMensagemId = participanteRepository.buscarUltimaMensagemId(salaId);
+            if (ultimaMensagemId == null) {
+                return Response.noContent().build();
+            }
+
+            if (ate == null || ate >= ultimaMensagemId) {
+                // Tudo lido
+                participanteRepository.marcarComoLida(usuarioId, salaId, ultimaMensagemId);
+                ChatMensagensNaoLidas.zerar(salaId, usuarioId);
+            } else {
+                // Leitura parcial: recalcula a partir do cursor
+                participanteRepository.marcarComoLida(usuarioId, salaId, ate);
+                ChatMensagensNaoLidas.atualizar(salaId, usuarioId,
+                        participanteRepository.contarMensagensNaoLidas(usuarioId, salaId));
+            }
+
+            return Response.noContent().build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao marcar mensagens como lidas: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * GET /chat/salas/{salaId}/presenca
+     * Lista os usuários online na sala (e quem está digitando), a partir da memória
+     */
+    @GET
+    @Path("/salas/{salaId}/presenca")
+    public Response listarPresenca(@PathParam("salaId") Integer salaId,
+                                   @Context SecurityContext sc) {
+        try {
+            // Valida autenticação
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuarioIdOpt.get(), salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            return Response.ok(ChatPresenca.listarOnline(salaId)).build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao listar presença: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * POST /chat/salas/{salaId}/presenca
+     * Heartbeat: mantém o usuário online na sala sem conexão SSE/WebSocket aberta
+     */
+    @POST
+    @Path("/salas/{salaId}/presenca")
+    public Response registrarPresenca(@PathParam("salaId") Integer salaId,
+                                      @Context SecurityContext sc) {
+        return registrarSinal(salaId, sc, false);
+    }
+
+    /**
+     * POST /chat/salas/{salaId}/digitando
+     * Indica que o usuário está digitando (expira sem novos avisos)
+     */
+    @POST
+    @Path("/salas/{salaId}/digitando")
+    public Response registrarDigitando(@PathParam("salaId") Integer salaId,
+                                       @Context SecurityContext sc) {
+        return registrarSinal(salaId, sc, true);
+    }
+
     /**
      * GET /chat/minhas-salas
      * Lista todas as salas que o usuário tem acesso válido
@@ -299,17 +825,17 @@ public class ChatService {
     public Response listarMinhasSalas(@Context SecurityContext sc) {
         try {
             // Valida autenticação
-            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
 
             // Lista participações ativas
-            List<ChatParticipante> participacoes = participanteRepository.listarSalasDoUsuario(usuario.getId());
+            List<ChatParticipante> participacoes = participanteRepository.listarSalasDoUsuario(usuarioId);
 
             // Converte para DTO
             List<ChatSalaResponse> response = participacoes.stream()
@@ -344,55 +870,18 @@ public class ChatService {
     public Response listarMinhasSalasDetalhadas(@Context SecurityContext sc) {
         try {
             // Valida autenticação
-            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
-
-            // Lista participações ativas
-            List<ChatParticipante> participacoes = participanteRepository.listarSalasDoUsuario(usuario.getId());
+            Integer usuarioId = usuarioIdOpt.get();
 
-            // Converte para DTO detalhado
-            List<ChatSalaDetalhadaResponse> response = participacoes.stream()
-                    .map(p -> {
-                        ChatSalaDetalhadaResponse dto = new ChatSalaDetalhadaResponse();
-                        dto.setSalaId(p.getSala().getId());
-                        dto.setEstabelecimentoId(p.getSala().getEstabelecimento().getId());
-                        dto.setEstabelecimentoNome(p.getSala().getEstabelecimento().getNome());
-                        dto.setAcessoExpiraEm(p.getAcessoExpiraEm());
-                        
-                        // Busca última mensagem
-                        ChatMensagem ultimaMensagem = mensagemRepository.buscarUltimaMensagemDaSala(p.getSala().getId());
-                        if (ultimaMensagem != null) {
-                            ChatSalaDetalhadaResponse.UltimaMensagemDTO msgDto = new ChatSalaDetalhadaResponse.UltimaMensagemDTO();
-                            
-                            // Descriptografa a mensagem
-                            try {
-                                String textoDescriptografado = mensagemRepository.descriptografar(ultimaMensagem.getMensagem());
-                                msgDto.setTexto(textoDescriptografado);
-                            } catch (Exception e) {
-                                msgDto.setTexto("[Erro ao descriptografar]");
-                            }
-                            
-                            msgDto.setUsuarioNome(ultimaMensagem.getUsuario() != null ? ultimaMensagem.getUsuario().getNome() : "Desconhecido");
-                            msgDto.setCriadoEm(ultimaMensagem.getCriadoEm());
-                            dto.setUltimaMensagem(msgDto);
-                        }
-                        
-                        // Conta participantes ativos
-                        Integer totalParticipantes = participanteRepository.contarParticipantesAtivos(p.getSala().getId());
-                        dto.setTotalParticipantesAtivos(totalParticipantes);
-                        
-                        // Por enquanto, mensagens não lidas sempre 0
-                        dto.setMensagensNaoLidas(0);
-                        
-                        return dto;
-                    })
-                    .collect(Collectors.toList());
+            // Salas ativas com última mensagem e participantes ativos (uma única consulta)
+            List<ChatSalaDetalhadaResponse> response = ChatMensagemConversor.converterSalasDetalhadas(
+                    participanteRepository.listarSalasDetalhadasDoUsuario(usuarioId), usuarioId);
 
             return Response.ok(response).build();
 
@@ -404,6 +893,36 @@ public class ChatService {
         }
     }
 
+    /**
+     * GET /chat/metricas
+     * Números do chat nesta instância, para acompanhar testes de carga (requer papel ADMIN)
+     */
+    @GET
+    @Path("/metricas")
+    public Response obterMetricas(@Context SecurityContext sc) {
+        if (!sc.isUserInRole("ADMIN")) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity("{\"error\":\"Acesso restrito a administradores\"}")
+                    .build();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ChatMetricasResponse metricas = new ChatMetricasResponse();
+        metricas.setThreadsAtivas(threads.getThreadCount());
+        metricas.setThreadsPico(threads.getPeakThreadCount());
+        metricas.setThreadsDaemon(threads.getDaemonThreadCount());
+        metricas.setLongPollingAguardando(ChatLongPollingManager.contarTotalAguardando());
+        metricas.setConexoesSse(ChatSseManager.contarTotalConexoes());
+        metricas.setConexoesWebSocket(ChatSalaHub.contarTotalConexoes());
+        metricas.setMensagensPendentesGravacao(mensagemLoteRepository.contarPendentes());
+        metricas.setEnviosLimitadosUsuario(ChatLimiteEnvio.contarLimitadosUsuario());
+        metricas.setEnviosLimitadosSala(ChatLimiteEnvio.contarLimitadosSala());
+        metricas.setLongPollingRespostasProntas(ChatLongPollingManager.contarRespostasProntas());
+        metricas.setLongPollingRespostasConsultadas(ChatLongPollingManager.contarRespostasConsultadas());
+        metricas.setConsultasMensagensPosteriores(consultasPosteriores.sum());
+        return Response.ok(metricas).build();
+    }
+
     /**
      * GET /chat/salas/{salaId}/participantes
      * Lista participantes ativos de uma sala
@@ -414,17 +933,17 @@ public class ChatService {
                                         @Context SecurityContext sc) {
         try {
             // Valida autenticação
-            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
 
             // Valida acesso à sala
-            if (!participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
+            if (!participanteRepository.verificarAcessoValido(usuarioId, salaId)) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
                         .build();
@@ -450,33 +969,258 @@ public class ChatService {
 
     // ==================== Métodos auxiliares ====================
 
+    /**
+     * Usuário autenticado completo (para quem precisa de mais do que o ID, ex.: nome na presença)
+     */
     private Optional<Usuario> obterUsuarioAutenticado(SecurityContext sc) {
-        if (sc == null || sc.getUserPrincipal() == null) {
-            return Optional.empty();
+        return usuarioAtual.obter(sc);
+    }
+
+    /**
+     * ID do usuário autenticado, vindo do token (sem consulta ao banco)
+     */
+    private Optional<Integer> obterUsuarioId(SecurityContext sc) {
+        return usuarioAtual.obterId(sc);
+    }
+
+    private Response registrarSinal(Integer salaId, SecurityContext sc, boolean digitando) {
+        try {
+            // Valida autenticação
+            Optional<Usuario> usuarioOpt = obterUsuarioAutenticado(sc);
+            if (usuarioOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            Usuario usuario = usuarioOpt.get();
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            if (digitando) {
+                ChatPresenca.digitando(salaId, usuario.getId(), usuario.getNome());
+            } else {
+                ChatPresenca.sinal(salaId, usuario.getId(), usuario.getNome());
+            }
+            return Response.noContent().build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao registrar presença: " + e.getMessage() + "\"}")
+                    .build();
         }
-        String email = sc.getUserPrincipal().getName();
-        return usuarioRepository.buscarPorEmail(email);
     }
 
-    private ChatMensagemResponse converterParaMensagemResponse(ChatMensagem mensagem) {
-        ChatMensagemResponse dto = new ChatMensagemResponse();
-        dto.setId(mensagem.getId());
-        dto.setSalaId(mensagem.getSala() != null ? mensagem.getSala().getId() : null);
-        dto.setUsuarioId(mensagem.getUsuario() != null ? mensagem.getUsuario().getId() : null);
-        dto.setUsuarioNome(mensagem.getUsuario() != null ? mensagem.getUsuario().getNome() : null);
-        dto.setUsuarioEmail(mensagem.getUsuario() != null ? mensagem.getUsuario().getEmail() : null);
-        
-        // Descriptografa mensagem
+    /**
+     * Edita (novoTexto informado) ou remove (novoTexto null) uma mensagem do próprio usuário
+     * e distribui a alteração para os clientes da sala
+     */
+    private Response alterarMensagem(Integer salaId, Integer mensagemId, String novoTexto, SecurityContext sc) {
+        try {
+            // Valida autenticação
+            Optional<Integer> usuarioIdOpt = obterUsuarioId(sc);
+            if (usuarioIdOpt.isEmpty()) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity("{\"error\":\"Usuário não autenticado\"}")
+                        .build();
+            }
+
+            Integer usuarioId = usuarioIdOpt.get();
+
+            // Valida acesso à sala
+            if (!participanteRepository.verificarAcessoValido(usuarioId, salaId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Você não tem acesso a esta sala ou seu acesso expirou\"}")
+                        .build();
+            }
+
+            // Alterações também são distribuídas a toda a sala: contam no mesmo limite dos envios
+            long aguardarSegundos = ChatLimiteEnvio.consumir(usuarioId, salaId);
+            if (aguardarSegundos > 0) {
+                return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, aguardarSegundos)
+                        .entity("{\"error\":\"Muitas mensagens em pouco tempo, aguarde para enviar novamente\"}")
+                        .build();
+            }
+
+            ChatMensagem mensagem = mensagemRepository.buscarNaSala(salaId, mensagemId);
+            if (mensagem == null) {
+                // Aceita pela gravação em lote e ainda não gravada no banco
+                boolean pendente = mensagemLoteRepository.listarPendentes(salaId).stream()
+                        .anyMatch(m -> m.getId().equals(mensagemId));
+                return pendente
+                        ? Response.status(Response.Status.CONFLICT)
+                                .entity("{\"error\":\"Mensagem ainda está sendo gravada, tente novamente em instantes\"}")
+                                .build()
+                        : Response.status(Response.Status.NOT_FOUND)
+                                .entity("{\"error\":\"Mensagem não encontrada\"}")
+                                .build();
+            }
+
+            // Apenas o autor edita ou remove a própria mensagem
+            if (!mensagem.getUsuario().getId().equals(usuarioId)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity("{\"error\":\"Apenas o autor pode alterar a mensagem\"}")
+                        .build();
+            }
+
+            if (mensagem.getRemovidoEm() != null) {
+                // Remoção repetida não gera nova alteração
+                return novoTexto == null
+                        ? Response.noContent().build()
+                        : Response.status(Response.Status.CONFLICT)
+                                .entity("{\"error\":\"Mensagem removida não pode ser editada\"}")
+                                .build();
+            }
+
+            ChatMensagemAlteracao alteracao = novoTexto != null
+                    ? mensagemRepository.editarMensagem(mensagem, novoTexto)
+                    : mensagemRepository.removerMensagem(mensagem);
+
+            // A mensagem recebida já reflete a alteração e tem o usuário carregado
+            ChatAlteracaoResponse response = ChatMensagemConversor.converterAlteracao(alteracao,
+                    ChatMensagemConversor.converterParaResponse(mensagem));
+
+            // Distribui para os clientes conectados na sala, em todas as instâncias
+            notificacaoRepository.publicarAlteracao(response);
+
+            return novoTexto != null ? Response.ok(response.getMensagem()).build() : Response.noContent().build();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro ao alterar mensagem: " + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Busca as mensagens posteriores a um ID (e, se pedido, as alterações posteriores ao cursor)
+     * e monta a resposta do Long Polling
+     * Executado fora da thread da requisição, quando uma requisição suspensa é notificada
+     */
+    private Response buscarMensagensPosteriores(Integer salaId, Integer after, Integer alteracoesAfter) {
         try {
-            String mensagemPlain = mensagemRepository.descriptografar(mensagem.getMensagem());
-            dto.setMensagem(mensagemPlain);
+            List<ChatMensagemResponse> mensagens = listarPosteriores(salaId, after);
+            if (mensagens.isEmpty()) {
+                List<ChatAlteracaoResponse> alteracoes = listarAlteracoesPosteriores(salaId, alteracoesAfter);
+                if (!alteracoes.isEmpty()) {
+                    return respostaAlteracoes(alteracoes, after);
+                }
+            }
+            return respostaPosteriores(mensagens);
         } catch (Exception e) {
-            dto.setMensagem("[Erro ao descriptografar mensagem]");
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Erro no Long Polling: " + e.getMessage() + "\"}")
+                    .build();
         }
-        
-        dto.setCriadoEm(mensagem.getCriadoEm());
-        dto.setEditadoEm(mensagem.getEditadoEm());
-        return dto;
+    }
+
+    /**
+     * Lista as mensagens posteriores a um ID, usando o cache de mensagens recentes quando possível
+     * e o banco (com descriptografia) quando o ID está fora da janela em memória
+     */
+    private List<ChatMensagemResponse> listarPosteriores(Integer salaId, Integer after) {
+        // Busca uma mensagem além do limite para saber se há mais páginas
+        return ChatMensagensRecentesCache.listarPosteriores(salaId, after, carregadorRecentes(salaId))
+                .orElseGet(() -> {
+                    consultasPosteriores.increment();
+                    List<ChatMensagemResponse> mensagens = mensagemLoteRepository.mesclarPendentes(salaId,
+                            ChatMensagemConversor.converterLote(
+                                    mensagemRepository.listarMensagensPosteriores(salaId, after, LIMITE_SINCRONIZACAO + 1)),
+                            after, null);
+                    return mensagens.size() > LIMITE_SINCRONIZACAO + 1
+                            ? mensagens.subList(0, LIMITE_SINCRONIZACAO + 1)
+                            : mensagens;
+                });
+    }
+
+    /**
+     * Últimas N mensagens de uma lista em ordem de ID
+     */
+    private static List<ChatMensagemResponse> ultimas(List<ChatMensagemResponse> mensagens, int limite) {
+        return mensagens.size() > limite ? mensagens.subList(mensagens.size() - limite, mensagens.size()) : mensagens;
+    }
+
+    /**
+     * Monta a resposta de sincronização: no máximo LIMITE_SINCRONIZACAO mensagens e o header X-Has-More
+     * indicando se o cliente deve pedir a próxima página (after = ID da última mensagem recebida)
+     */
+    private Response respostaPosteriores(List<ChatMensagemResponse> mensagens) {
+        boolean temMais = mensagens.size() > LIMITE_SINCRONIZACAO;
+        return Response.ok(temMais ? mensagens.subList(0, LIMITE_SINCRONIZACAO) : mensagens)
+                .header(HEADER_HAS_MORE, temMais)
+                .build();
+    }
+
+    /**
+     * Lista as alterações posteriores ao cursor (uma além do limite, para saber se há mais páginas)
+     * O cursor em memória da sala evita consultar o banco quando não houve alterações
+     */
+    private List<ChatAlteracaoResponse> listarAlteracoesPosteriores(Integer salaId, Integer alteracoesAfter) {
+        if (alteracoesAfter == null || ChatAlteracoes.ultimaAlteracao(salaId,
+                () -> mensagemRepository.buscarUltimaAlteracaoId(salaId)) <= alteracoesAfter) {
+            return List.of();
+        }
+        return ChatMensagemConversor.converterAlteracoes(
+                mensagemRepository.listarAlteracoesPosteriores(salaId, alteracoesAfter, LIMITE_SINCRONIZACAO + 1));
+    }
+
+    /**
+     * Monta a resposta do Long Polling com as mensagens alteradas (estado atual, uma vez cada)
+     * Mensagens com ID acima de after ficam de fora: o cliente ainda vai recebê-las como novas, já alteradas,
+     * e pode continuar usando o maior ID recebido como after. O novo cursor vai no header X-Ultima-Alteracao.
+     */
+    private Response respostaAlteracoes(List<ChatAlteracaoResponse> alteracoes, Integer after) {
+        boolean temMais = alteracoes.size() > LIMITE_SINCRONIZACAO;
+        List<ChatAlteracaoResponse> pagina = temMais ? alteracoes.subList(0, LIMITE_SINCRONIZACAO) : alteracoes;
+
+        Map<Integer, ChatMensagemResponse> mensagens = new LinkedHashMap<>();
+        for (ChatAlteracaoResponse alteracao : pagina) {
+            if (alteracao.getMensagem().getId() <= after) {
+                mensagens.remove(alteracao.getMensagem().getId());
+                mensagens.put(alteracao.getMensagem().getId(), alteracao.getMensagem());
+            }
+        }
+        return Response.ok(new ArrayList<>(mensagens.values()))
+                .header(HEADER_HAS_MORE, temMais)
+                .header(HEADER_ULTIMA_ALTERACAO, pagina.get(pagina.size() - 1).getId())
+                .build();
+    }
+
+    /**
+     * Carregador usado pelo cache para trazer as últimas mensagens de uma sala que ainda não está em memória
+     */
+    private Supplier<List<ChatMensagemResponse>> carregadorRecentes(Integer salaId) {
+        return () -> {
+            // Inclui as mensagens aceitas pela gravação em lote que ainda não chegaram ao banco
+            return mensagemLoteRepository.mesclarPendentes(salaId, ChatMensagemConversor.converterLote(
+                    mensagemRepository.listarUltimasMensagens(salaId, ChatMensagensRecentesCache.CAPACIDADE_POR_SALA)),
+                    null, null);
+        };
+    }
+
+    /**
+     * Carregador do histórico para montar o índice de busca da sala (do mais recente para o mais antigo)
+     */
+    private Function<Integer, List<ChatMensagemResponse>> carregadorBusca(Integer salaId) {
+        return antesDe -> {
+            List<ChatMensagemResponse> mensagens = ChatMensagemConversor.converterLote(
+                    mensagemRepository.listarMensagensAnteriores(salaId,
+                            antesDe != null ? antesDe : Integer.MAX_VALUE, TAMANHO_PAGINA_INDICE));
+            if (antesDe == null) {
+                // Mensagens aceitas pela gravação em lote que ainda não chegaram ao banco
+                return mensagemLoteRepository.mesclarPendentes(salaId, mensagens, null, null);
+            }
+            return mensagens;
+        };
     }
 
     private ChatParticipanteResponse converterParaParticipanteResponse(ChatParticipante participante) {
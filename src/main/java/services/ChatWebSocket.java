@@ -0,0 +1,216 @@
+package services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.jsonwebtoken.Claims;
+import jakarta.inject.Inject;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+import filter.UsuarioPrincipal;
+import model.ChatMensagem;
+import model.ChatParticipante;
+import model.ChatSala;
+import model.Usuario;
+import model.dto.ChatEventoResponse;
+import model.dto.ChatMensagemRequest;
+import model.dto.ChatMensagemResponse;
+import repository.ChatMensagemLoteRepository;
+import repository.ChatMensagemRepository;
+import repository.ChatParticipanteRepository;
+import repository.ChatSalaRepository;
+import repository.UsuarioRepository;
+import repository.utilitarios.NotificacaoChatRepository;
+import utils.ChatLimiteEnvio;
+import utils.ChatMensagemConversor;
+import utils.ChatPresenca;
+import utils.ChatSalaHub;
+import utils.JwtUtil;
+
+/**
+ * WS /ws/chat/{salaId}?token={accessToken}
+ * Transporte WebSocket do chat: o cliente envia e recebe mensagens pela mesma conexão.
+ * Frames enviados pelo cliente: {"mensagem":"texto"} ou {"tipo":"digitando"}
+ * Frames enviados pelo servidor: {"tipo":"mensagem","dados":{...}}, {"tipo":"presenca","dados":{...}}
+ * ou {"tipo":"erro","dados":{"error":"..."}}
+ */
+@ServerEndpoint("/ws/chat/{salaId}")
+public class ChatWebSocket {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String PROP_USUARIO = "usuario";
+    private static final String PROP_SALA = "sala";
+    private static final String PROP_ACESSO_EXPIRA_EM = "acessoExpiraEm";
+    private static final String PROP_PRESENCA = "presenca";
+
+    private static final String TIPO_DIGITANDO = "digitando";
+
+    @Inject
+    private UsuarioRepository usuarioRepository;
+
+    @Inject
+    private ChatSalaRepository salaRepository;
+
+    @Inject
+    private ChatMensagemRepository mensagemRepository;
+
+    @Inject
+    private ChatParticipanteRepository participanteRepository;
+
+    @Inject
+    private ChatMensagemLoteRepository mensagemLoteRepository;
+
+    @Inject
+    private NotificacaoChatRepository notificacaoRepository;
+
+    @OnOpen
+    public void aoAbrir(Session session, @PathParam("salaId") Integer salaId) {
+        // Valida o token (navegadores não enviam header Authorization no handshake WebSocket)
+        UsuarioPrincipal principal;
+        try {
+            Claims claims = JwtUtil.verificar(obterToken(session));
+            principal = new UsuarioPrincipal(JwtUtil.usuarioId(claims), claims.getSubject(), null, null);
+        } catch (Exception e) {
+            ChatSalaHub.fechar(session, CloseReason.CloseCodes.VIOLATED_POLICY, "invalid_or_missing_token");
+            return;
+        }
+
+        Optional<Usuario> usuarioOpt = usuarioRepository.buscarAutenticado(principal);
+        if (usuarioOpt.isEmpty()) {
+            ChatSalaHub.fechar(session, CloseReason.CloseCodes.VIOLATED_POLICY, "Usuário não autenticado");
+            return;
+        }
+
+        Usuario usuario = usuarioOpt.get();
+
+        // Valida acesso à sala (uma vez por conexão; a expiração é verificada localmente depois)
+        Optional<ChatParticipante> participanteOpt = participanteRepository.buscarParticipante(usuario.getId(), salaId);
+        if (participanteOpt.isEmpty() || !participanteRepository.verificarAcessoValido(usuario.getId(), salaId)) {
+            ChatSalaHub.fechar(session, CloseReason.CloseCodes.VIOLATED_POLICY,
+                    "Você não tem acesso a esta sala ou seu acesso expirou");
+            return;
+        }
+
+        ChatSala sala = salaRepository.consultar(salaId);
+        if (sala == null) {
+            ChatSalaHub.fechar(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Sala não encontrada");
+            return;
+        }
+
+        long acessoExpiraEm = participanteOpt.get().getAcessoExpiraEm().getTime();
+        session.getUserProperties().put(PROP_USUARIO, usuario);
+        session.getUserProperties().put(PROP_SALA, sala);
+        session.getUserProperties().put(PROP_ACESSO_EXPIRA_EM, acessoExpiraEm);
+
+        ChatSalaHub.registrar(salaId, session, acessoExpiraEm);
+
+        // Usuário online enquanto a sessão estiver aberta
+        BooleanSupplier aberta = session::isOpen;
+        session.getUserProperties().put(PROP_PRESENCA, aberta);
+        ChatPresenca.conectar(salaId, usuario.getId(), usuario.getNome(), aberta);
+    }
+
+    @OnMessage
+    public void aoReceber(Session session, String texto) {
+        Usuario usuario = (Usuario) session.getUserProperties().get(PROP_USUARIO);
+        ChatSala sala = (ChatSala) session.getUserProperties().get(PROP_SALA);
+        Long acessoExpiraEm = (Long) session.getUserProperties().get(PROP_ACESSO_EXPIRA_EM);
+        if (usuario == null || sala == null || acessoExpiraEm == null) {
+            return;
+        }
+
+        if (System.currentTimeMillis() >= acessoExpiraEm) {
+            ChatSalaHub.fechar(session, CloseReason.CloseCodes.VIOLATED_POLICY,
+                    "Você não tem acesso a esta sala ou seu acesso expirou");
+            return;
+        }
+
+        try {
+            JsonNode frame = MAPPER.readTree(texto);
+
+            // Aviso de digitação: não é uma mensagem
+            if (frame != null && TIPO_DIGITANDO.equals(frame.path("tipo").asText())) {
+                ChatPresenca.digitando(sala.getId(), usuario.getId(), usuario.getNome());
+                return;
+            }
+
+            ChatMensagemRequest request = frame != null ? MAPPER.treeToValue(frame, ChatMensagemRequest.class) : null;
+
+            // Valida request
+            if (request == null || request.getMensagem() == null || request.getMensagem().trim().isEmpty()) {
+                enviarErro(session, "Mensagem é obrigatória");
+                return;
+            }
+
+            if (request.getMensagem().length() > 1000) {
+                enviarErro(session, "Mensagem muito longa (máximo 1000 caracteres)");
+                return;
+            }
+
+            // Mesmo limite de envio do POST /chat/salas/{salaId}/mensagens
+            long aguardarSegundos = ChatLimiteEnvio.consumir(usuario.getId(), sala.getId());
+            if (aguardarSegundos > 0) {
+                enviarErro(session, "Muitas mensagens em pouco tempo, aguarde " + aguardarSegundos + "s para enviar novamente");
+                return;
+            }
+
+            // Gravação em lote (se ativa): a mensagem já é distribuída e será gravada em seguida
+            if (mensagemLoteRepository.enfileirar(sala, usuario, request.getMensagem()).isPresent()) {
+                return;
+            }
+
+            // Insere mensagem (criptografada automaticamente) e distribui para a sala, inclusive esta sessão
+            ChatMensagem mensagem = mensagemRepository.inserirMensagem(sala, usuario, request.getMensagem());
+            ChatMensagemResponse response = ChatMensagemConversor.converterParaResponse(mensagem);
+            notificacaoRepository.publicar(response);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            enviarErro(session, "Erro ao enviar mensagem: " + e.getMessage());
+        }
+    }
+
+    @OnClose
+    public void aoFechar(Session session, @PathParam("salaId") Integer salaId) {
+        ChatSalaHub.remover(salaId, session);
+        removerPresenca(session, salaId);
+    }
+
+    @OnError
+    public void aoFalhar(Session session, @PathParam("salaId") Integer salaId, Throwable erro) {
+        ChatSalaHub.remover(salaId, session);
+        removerPresenca(session, salaId);
+    }
+
+    private void removerPresenca(Session session, Integer salaId) {
+        Usuario usuario = (Usuario) session.getUserProperties().get(PROP_USUARIO);
+        BooleanSupplier aberta = (BooleanSupplier) session.getUserProperties().remove(PROP_PRESENCA);
+        if (usuario != null && aberta != null) {
+            ChatPresenca.desconectar(salaId, usuario.getId(), aberta);
+        }
+    }
+
+    private String obterToken(Session session) {
+        List<String> valores = session.getRequestParameterMap().get("token");
+        if (valores == null || valores.isEmpty() || valores.get(0).isBlank()) {
+            throw new IllegalArgumentException("Token ausente");
+        }
+        return valores.get(0);
+    }
+
+    private void enviarErro(Session session, String mensagem) {
+        ChatSalaHub.enviar(session, new ChatEventoResponse(ChatSalaHub.EVENTO_ERRO, Map.of("error", mensagem)));
+    }
+}
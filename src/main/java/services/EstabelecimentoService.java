@@ -10,6 +10,8 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import filter.UsuarioAtual;
+import filter.UsuarioPrincipal;
 import model.Checkin;
 import model.ChatSala;
 import model.Estabelecimento;
@@ -25,7 +27,6 @@ import repository.ChatParticipanteRepository;
 import repository.EstabelecimentoRepository;
 import repository.PapelRepository;
 import repository.UsuarioPapelRepository;
-import repository.UsuarioRepository;
 
 @Path("/estabelecimentos")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -41,7 +42,7 @@ public class EstabelecimentoService {
     private CheckinRepository checkinRepository;
 
     @Inject
-    private UsuarioRepository usuarioRepository;
+    private UsuarioAtual usuarioAtual;
 
     @Inject
     private ChatSalaRepository chatSalaRepository;
@@ -87,17 +88,14 @@ public class EstabelecimentoService {
             }
 
             // Obter usuário autenticado
-            String emailUsuario = sc != null && sc.getUserPrincipal() != null 
-                ? sc.getUserPrincipal().getName() 
-                : null;
-                
-            if (emailUsuario == null) {
+            Optional<UsuarioPrincipal> principalOpt = UsuarioPrincipal.de(sc);
+            if (principalOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            var usuarioOpt = usuarioRepository.buscarPorEmail(emailUsuario);
+            var usuarioOpt = usuarioAtual.obter(sc);
             if (usuarioOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não encontrado\"}")
@@ -108,7 +106,7 @@ public class EstabelecimentoService {
             estabelecimento.setProprietario(proprietario);
 
             // Atribuir papel de empresário ao proprietário se ainda não tiver
-            if (!usuarioPapelRepository.usuarioTemPapel(proprietario.getId(), Papel.CODIGO_EMPRESARIO)) {
+            if (!ehEmpresario(sc, proprietario.getId())) {
                 var papelEmpresarioOpt = papelRepository.buscarPorCodigo(Papel.CODIGO_EMPRESARIO);
                 if (papelEmpresarioOpt.isPresent()) {
                     usuarioPapelRepository.atribuirPapel(proprietario, papelEmpresarioOpt.get());
@@ -136,8 +134,7 @@ public class EstabelecimentoService {
                         .build();
             }
 
-            Optional<Usuario> usuarioOpt = usuarioRepository.buscarPorEmail(
-                    sc != null && sc.getUserPrincipal() != null ? sc.getUserPrincipal().getName() : null);
+            Optional<Usuario> usuarioOpt = usuarioAtual.obter(sc);
             if (usuarioOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
@@ -205,33 +202,30 @@ public class EstabelecimentoService {
     @Path("/meus")
     public Response listarMeusEstabelecimentos(@Context SecurityContext sc) {
         try {
-            String emailUsuario = sc != null && sc.getUserPrincipal() != null 
-                ? sc.getUserPrincipal().getName() 
-                : null;
-                
-            if (emailUsuario == null) {
+            Optional<UsuarioPrincipal> principalOpt = UsuarioPrincipal.de(sc);
+            if (principalOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            var usuarioOpt = usuarioRepository.buscarPorEmail(emailUsuario);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = usuarioAtual.obterId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não encontrado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
             
             // Verificar se o usuário é empresário
-            if (!usuarioPapelRepository.usuarioTemPapel(usuario.getId(), Papel.CODIGO_EMPRESARIO)) {
+            if (!ehEmpresario(sc, usuarioId)) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Acesso permitido apenas para empresários\"}")
                         .build();
             }
 
-            List<Estabelecimento> estabelecimentos = estabelecimentoRepository.listarPorProprietario(usuario.getId());
+            List<Estabelecimento> estabelecimentos = estabelecimentoRepository.listarPorProprietario(usuarioId);
             List<EstabelecimentoComEstatisticasDTO> resultado = estabelecimentos.stream()
                     .map(e -> converterParaEstatisticas(e))
                     .collect(Collectors.toList());
@@ -248,27 +242,24 @@ public class EstabelecimentoService {
     @Path("/{id}/estatisticas")
     public Response obterEstatisticas(@PathParam("id") Integer estabelecimentoId, @Context SecurityContext sc) {
         try {
-            String emailUsuario = sc != null && sc.getUserPrincipal() != null 
-                ? sc.getUserPrincipal().getName() 
-                : null;
-                
-            if (emailUsuario == null) {
+            Optional<UsuarioPrincipal> principalOpt = UsuarioPrincipal.de(sc);
+            if (principalOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            var usuarioOpt = usuarioRepository.buscarPorEmail(emailUsuario);
-            if (usuarioOpt.isEmpty()) {
+            Optional<Integer> usuarioIdOpt = usuarioAtual.obterId(sc);
+            if (usuarioIdOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não encontrado\"}")
                         .build();
             }
 
-            Usuario usuario = usuarioOpt.get();
+            Integer usuarioId = usuarioIdOpt.get();
 
             // Verificar se o usuário é empresário
-            if (!usuarioPapelRepository.usuarioTemPapel(usuario.getId(), Papel.CODIGO_EMPRESARIO)) {
+            if (!ehEmpresario(sc, usuarioId)) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Acesso permitido apenas para empresários\"}")
                         .build();
@@ -285,7 +276,7 @@ public class EstabelecimentoService {
 
             // Verificar se o usuário é o proprietário
             if (estabelecimento.getProprietario() == null || 
-                !estabelecimento.getProprietario().getId().equals(usuario.getId())) {
+                !estabelecimento.getProprietario().getId().equals(usuarioId)) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("{\"error\":\"Você não tem permissão para acessar este estabelecimento\"}")
                         .build();
@@ -300,6 +291,16 @@ public class EstabelecimentoService {
         }
     }
 
+    /**
+     * Verifica o papel de empresário pela claim "papeis" do token (apenas usuario_papel, nunca usuario.roles);
+     * o banco só é consultado quando o token não traz o papel
+     * (ex.: papel atribuído no cadastro do primeiro estabelecimento, antes de o token ser renovado)
+     */
+    private boolean ehEmpresario(SecurityContext sc, Integer usuarioId) {
+        return UsuarioPrincipal.de(sc).map(p -> p.temPapel(Papel.CODIGO_EMPRESARIO)).orElse(false)
+                || usuarioPapelRepository.usuarioTemPapel(usuarioId, Papel.CODIGO_EMPRESARIO);
+    }
+
     private EstabelecimentoComEstatisticasDTO converterParaEstatisticas(Estabelecimento estabelecimento) {
         EstabelecimentoComEstatisticasDTO dto = new EstabelecimentoComEstatisticasDTO();
         dto.setId(estabelecimento.getId());
@@ -5,13 +5,14 @@ import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
-
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import filter.UsuarioAtual;
+import filter.UsuarioPrincipal;
 import model.Estabelecimento;
 import model.Evento;
 import model.EventoLink;
@@ -28,7 +29,6 @@ import repository.EventoLinkRepository;
 import repository.EventoPresencaRepository;
 import repository.EventoRepository;
 import repository.TipoLinkEventoRepository;
-import repository.UsuarioRepository;
 
 @Path("/estabelecimentos/{estabelecimentoId}/eventos")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -47,7 +47,7 @@ public class EventoService {
     private EstabelecimentoRepository estabelecimentoRepository;
 
     @Inject
-    private UsuarioRepository usuarioRepository;
+    private UsuarioAtual usuarioAtual;
 
     @Inject
     private EventoPresencaRepository eventoPresencaRepository;
@@ -65,11 +65,11 @@ public class EventoService {
                     .build();
         }
 
-        Usuario usuarioLogado = resolverUsuario(sc);
+        Integer usuarioLogadoId = resolverUsuarioId(sc);
 
         List<Evento> eventos = eventoRepository.listarAtivosPorEstabelecimento(estabelecimentoId);
         List<EventoResponse> resultado = eventos.stream()
-                .map(evento -> converterParaResponse(evento, usuarioLogado))
+                .map(evento -> converterParaResponse(evento, usuarioLogadoId))
                 .collect(Collectors.toList());
 
         return Response.ok(resultado).build();
@@ -108,7 +108,7 @@ public class EventoService {
             Evento salvo = eventoRepository.inserir(evento);
             salvarLinks(salvo, request.getLinks());
 
-            EventoResponse response = converterParaResponse(salvo, resolverUsuario(sc));
+            EventoResponse response = converterParaResponse(salvo, resolverUsuarioId(sc));
             return Response.status(Response.Status.CREATED).entity(response).build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -168,7 +168,7 @@ public class EventoService {
             eventoLinkRepository.removerPorEvento(eventoId);
             salvarLinks(evento, request.getLinks());
 
-            EventoResponse response = converterParaResponse(evento, resolverUsuario(sc));
+            EventoResponse response = converterParaResponse(evento, resolverUsuarioId(sc));
             return Response.ok(response).build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -217,17 +217,14 @@ public class EventoService {
                                       @PathParam("eventoId") Integer eventoId,
                                       @Context SecurityContext sc) {
         try {
-            String emailUsuario = sc != null && sc.getUserPrincipal() != null
-                    ? sc.getUserPrincipal().getName()
-                    : null;
-
-            if (emailUsuario == null) {
+            Optional<UsuarioPrincipal> principalOpt = UsuarioPrincipal.de(sc);
+            if (principalOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não autenticado\"}")
                         .build();
             }
 
-            Optional<Usuario> usuarioOpt = usuarioRepository.buscarPorEmail(emailUsuario);
+            Optional<Usuario> usuarioOpt = usuarioAtual.obter(sc);
             if (usuarioOpt.isEmpty()) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\":\"Usuário não encontrado\"}")
@@ -285,18 +282,15 @@ public class EventoService {
     }
 
     private Response validarProprietario(Integer estabelecimentoId, SecurityContext sc) {
-        String emailUsuario = sc != null && sc.getUserPrincipal() != null
-                ? sc.getUserPrincipal().getName()
-                : null;
-
-        if (emailUsuario == null) {
+        Optional<UsuarioPrincipal> principalOpt = UsuarioPrincipal.de(sc);
+        if (principalOpt.isEmpty()) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\":\"Usuário não autenticado\"}")
                     .build();
         }
 
-        var usuarioOpt = usuarioRepository.buscarPorEmail(emailUsuario);
-        if (usuarioOpt.isEmpty()) {
+        Optional<Integer> usuarioIdOpt = usuarioAtual.obterId(sc);
+        if (usuarioIdOpt.isEmpty()) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\":\"Usuário não encontrado\"}")
                     .build();
@@ -310,10 +304,9 @@ public class EventoService {
         }
 
         Estabelecimento estabelecimento = estabelecimentoOpt.get();
-        Usuario usuario = usuarioOpt.get();
 
         if (estabelecimento.getProprietario() == null ||
-                !estabelecimento.getProprietario().getId().equals(usuario.getId())) {
+                !estabelecimento.getProprietario().getId().equals(usuarioIdOpt.get())) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("{\"error\":\"Você não tem permissão para gerenciar eventos deste estabelecimento\"}")
                     .build();
@@ -376,14 +369,11 @@ public class EventoService {
         }
     }
 
-    private Usuario resolverUsuario(SecurityContext sc) {
-        if (sc == null || sc.getUserPrincipal() == null) return null;
-        String email = sc.getUserPrincipal().getName();
-        if (email == null) return null;
-        return usuarioRepository.buscarPorEmail(email).orElse(null);
+    private Integer resolverUsuarioId(SecurityContext sc) {
+        return usuarioAtual.obterId(sc).orElse(null);
     }
 
-    private EventoResponse converterParaResponse(Evento evento, Usuario usuario) {
+    private EventoResponse converterParaResponse(Evento evento, Integer usuarioId) {
         EventoResponse response = new EventoResponse();
         response.setId(evento.getId());
         response.setEstabelecimentoId(evento.getEstabelecimento().getId());
@@ -400,9 +390,9 @@ public class EventoService {
         int totalPresencas = (int) eventoPresencaRepository.contarPorEvento(evento.getId());
         response.setTotalPresencas(totalPresencas);
 
-        if (usuario != null) {
+        if (usuarioId != null) {
             boolean pretendeIr = eventoPresencaRepository
-                    .buscarPorEventoEUsuario(evento.getId(), usuario.getId())
+                    .buscarPorEventoEUsuario(evento.getId(), usuarioId)
                     .isPresent();
             response.setUsuarioPretendeIr(pretendeIr);
         } else {
@@ -3,15 +3,23 @@ package services;
 import java.net.URLConnection;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import model.Usuario;
 import model.dto.FotoUsuarioRequest;
 import repository.UsuarioRepository;
 import repository.utilitarios.ArmazenamentoRepository;
+import utils.BcryptExecutor;
 import utils.BcryptUtil;
 
 @Path("/usuario")
@@ -27,6 +35,12 @@ public class UsuarioService {
 	@Inject
 	private ArmazenamentoRepository armazenamentoRepository;
 
+	@EJB
+	private BcryptExecutor bcryptExecutor;
+
+	@Resource
+	private ManagedExecutorService executor;
+
 	@GET
 	public Response listar() {
 		List<Usuario> usuarios = usuarioRepository.pesquisarTodos();
@@ -45,39 +59,56 @@ public class UsuarioService {
 		return Response.ok().entity(usuario).build();
 	}
 
+	/**
+	 * Cadastro de usuário
+	 * O BCrypt da senha roda no BcryptExecutor; fila cheia: 503 + Retry-After.
+	 */
 	@POST
-	public Response cadastrar(Usuario usuario) {
-		try {
-			if (usuario == null) {
-				return Response.status(Response.Status.BAD_REQUEST).entity("Dados do usuário são obrigatórios").build();
-			}
+	public void cadastrar(Usuario usuario, @Suspended AsyncResponse asyncResponse) {
+		Response erroValidacao = validarCadastro(usuario);
+		if (erroValidacao != null) {
+			asyncResponse.resume(erroValidacao);
+			return;
+		}
 
-            if (usuario.getNome() == null || usuario.getNome().isBlank()) {
-                return Response.status(Response.Status.BAD_REQUEST).entity("Nome é obrigatório").build();
-            }
+        usuario.setNome(usuario.getNome().trim());
+        usuario.setEmail(usuario.getEmail().trim().toLowerCase());
+        if (usuario.getTelefone() != null && !usuario.getTelefone().isBlank()) {
+            usuario.setTelefone(usuario.getTelefone().trim());
+        } else {
+            usuario.setTelefone(null);
+        }
 
-            if (usuario.getEmail() == null || usuario.getEmail().isBlank()) {
-                return Response.status(Response.Status.BAD_REQUEST).entity("Email é obrigatório").build();
-            }
+		criptografarSenha(usuario.getSenha(), asyncResponse,
+				senhaCriptografada -> concluirCadastro(usuario, senhaCriptografada));
+	}
 
-			if (usuario.getSenha() == null || usuario.getSenha().isBlank()) {
-				return Response.status(Response.Status.BAD_REQUEST).entity("Senha é obrigatória").build();
-			}
+	private Response validarCadastro(Usuario usuario) {
+		if (usuario == null) {
+			return Response.status(Response.Status.BAD_REQUEST).entity("Dados do usuário são obrigatórios").build();
+		}
 
-            usuario.setNome(usuario.getNome().trim());
-            usuario.setEmail(usuario.getEmail().trim().toLowerCase());
-            if (usuario.getTelefone() != null && !usuario.getTelefone().isBlank()) {
-                usuario.setTelefone(usuario.getTelefone().trim());
-            } else {
-                usuario.setTelefone(null);
-            }
+        if (usuario.getNome() == null || usuario.getNome().isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Nome é obrigatório").build();
+        }
 
-			String senhaCriptografada = BcryptUtil.criptografarSenha(usuario.getSenha());
+        if (usuario.getEmail() == null || usuario.getEmail().isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Email é obrigatório").build();
+        }
+
+		if (usuario.getSenha() == null || usuario.getSenha().isBlank()) {
+			return Response.status(Response.Status.BAD_REQUEST).entity("Senha é obrigatória").build();
+		}
+
+		return null;
+	}
+
+	private Response concluirCadastro(Usuario usuario, String senhaCriptografada) {
+		try {
 			usuario.setSenha(senhaCriptografada);
 
-			if (usuario.getRoles() == null || usuario.getRoles().isBlank()) {
-				usuario.setRoles("USER");
-			}
+			// Cadastro público: os roles não vêm do cliente (papéis são atribuídos pelo servidor em usuario_papel)
+			usuario.setRoles("USER");
 
 			this.usuarioRepository.validarDadosUnicos(usuario);
 
@@ -86,22 +117,32 @@ public class UsuarioService {
 			return Response.ok().entity(usuarioCadastrado).build();
 
 		} catch (Exception e) {
-			if (e instanceof IllegalArgumentException) {
-				return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
-			}
-			return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-					.entity("Erro interno do servidor: " + e.getMessage())
-					.build();
+			return respostaErro(e);
 		}
 	}
 
+	/**
+	 * Atualização de usuário
+	 * Com nova senha, o BCrypt roda no BcryptExecutor; fila cheia: 503 + Retry-After.
+	 */
 	@PUT
-	public Response atualizar(Usuario usuario) {
-		try {
-			if (usuario == null || usuario.getId() == null) {
-				return Response.status(Response.Status.BAD_REQUEST).entity("ID do usuário é obrigatório").build();
-			}
+	public void atualizar(Usuario usuario, @Suspended AsyncResponse asyncResponse) {
+		if (usuario == null || usuario.getId() == null) {
+			asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST).entity("ID do usuário é obrigatório").build());
+			return;
+		}
+
+		if (usuario.getSenha() == null || usuario.getSenha().isBlank()) {
+			asyncResponse.resume(concluirAtualizacao(usuario, null));
+			return;
+		}
+
+		criptografarSenha(usuario.getSenha(), asyncResponse,
+				senhaCriptografada -> concluirAtualizacao(usuario, senhaCriptografada));
+	}
 
+	private Response concluirAtualizacao(Usuario usuario, String senhaCriptografada) {
+		try {
 			Usuario usuarioExistente = this.usuarioRepository.consultar(usuario.getId());
 			if (usuarioExistente == null) {
 				return Response.status(Response.Status.NOT_FOUND).entity("Usuário não encontrado").build();
@@ -116,8 +157,7 @@ public class UsuarioService {
 			if (usuario.getTelefone() != null) {
 				usuarioExistente.setTelefone(usuario.getTelefone());
 			}
-			if (usuario.getSenha() != null && !usuario.getSenha().isBlank()) {
-				String senhaCriptografada = BcryptUtil.criptografarSenha(usuario.getSenha());
+			if (senhaCriptografada != null) {
 				usuarioExistente.setSenha(senhaCriptografada);
 			}
 
@@ -130,15 +170,33 @@ public class UsuarioService {
 			return Response.ok().entity(atualizado).build();
 
 		} catch (Exception e) {
-			if (e instanceof IllegalArgumentException) {
-				return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
-			}
-			return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-					.entity("Erro interno do servidor: " + e.getMessage())
-					.build();
+			return respostaErro(e);
+		}
+	}
+
+	/**
+	 * Criptografa a senha no BcryptExecutor e conclui a requisição no executor do container
+	 */
+	private void criptografarSenha(String senha, AsyncResponse asyncResponse, Function<String, Response> concluir) {
+		try {
+			bcryptExecutor.executar(() -> BcryptUtil.criptografarSenha(senha))
+					.thenApplyAsync(concluir, executor)
+					.whenComplete((resposta, erro) -> asyncResponse.resume(
+							erro != null ? respostaErro(BcryptExecutor.causa(erro)) : resposta));
+		} catch (RejectedExecutionException e) {
+			asyncResponse.resume(BcryptExecutor.respostaOcupado());
 		}
 	}
 
+	private Response respostaErro(Throwable e) {
+		if (e instanceof IllegalArgumentException) {
+			return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
+		}
+		return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+				.entity("Erro interno do servidor: " + e.getMessage())
+				.build();
+	}
+
 	@DELETE
 	@Path("/{id}")
 	public Response remover(@PathParam("id") Integer id) {
@@ -2,7 +2,10 @@ package utils;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 public class AesCryptoUtil {
 
@@ -11,6 +14,13 @@ public class AesCryptoUtil {
     private static final String CHAVE_SECRETA = "SoloAndCo2026ChatSecretKey123456"; // 32 caracteres
     private static final String ALGORITMO = "AES";
 
+    // Chave montada uma única vez
+    private static final SecretKeySpec CHAVE = new SecretKeySpec(CHAVE_SECRETA.getBytes(StandardCharsets.UTF_8), ALGORITMO);
+
+    // Cipher não é thread-safe: cada thread mantém as suas, já inicializadas com a chave
+    private static final ThreadLocal<Cipher> CIPHER_CRIPTOGRAFAR = ThreadLocal.withInitial(() -> criarCipher(Cipher.ENCRYPT_MODE));
+    private static final ThreadLocal<Cipher> CIPHER_DESCRIPTOGRAFAR = ThreadLocal.withInitial(() -> criarCipher(Cipher.DECRYPT_MODE));
+
     /**
      * Criptografa um texto usando AES-256
      * @param textoPlano Texto a ser criptografado
@@ -22,12 +32,14 @@ public class AesCryptoUtil {
             throw new IllegalArgumentException("Texto para criptografar não pode ser vazio");
         }
 
-        SecretKeySpec chave = new SecretKeySpec(CHAVE_SECRETA.getBytes("UTF-8"), ALGORITMO);
-        Cipher cipher = Cipher.getInstance(ALGORITMO);
-        cipher.init(Cipher.ENCRYPT_MODE, chave);
-        
-        byte[] textoEncriptado = cipher.doFinal(textoPlano.getBytes("UTF-8"));
-        return Base64.getEncoder().encodeToString(textoEncriptado);
+        try {
+            byte[] textoEncriptado = CIPHER_CRIPTOGRAFAR.get().doFinal(textoPlano.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(textoEncriptado);
+        } catch (Exception e) {
+            // Descarta a cipher, que pode ter ficado em estado inconsistente
+            CIPHER_CRIPTOGRAFAR.remove();
+            throw e;
+        }
     }
 
     /**
@@ -41,13 +53,47 @@ public class AesCryptoUtil {
             throw new IllegalArgumentException("Texto criptografado não pode ser vazio");
         }
 
-        SecretKeySpec chave = new SecretKeySpec(CHAVE_SECRETA.getBytes("UTF-8"), ALGORITMO);
-        Cipher cipher = Cipher.getInstance(ALGORITMO);
-        cipher.init(Cipher.DECRYPT_MODE, chave);
-        
         byte[] textoDecodificado = Base64.getDecoder().decode(textoCriptografado);
-        byte[] textoDescriptografado = cipher.doFinal(textoDecodificado);
-        return new String(textoDescriptografado, "UTF-8");
+        try {
+            byte[] textoDescriptografado = CIPHER_DESCRIPTOGRAFAR.get().doFinal(textoDecodificado);
+            return new String(textoDescriptografado, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            // Descarta a cipher, que pode ter ficado em estado inconsistente
+            CIPHER_DESCRIPTOGRAFAR.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * Descriptografa uma lista de textos (ex.: uma página de mensagens)
+     * Roda na thread da requisição, com a mesma cipher para todo o lote: paralelizar usaria o
+     * ForkJoinPool comum, fora do controle do container e compartilhado por todas as requisições.
+     * @param textosCriptografados Textos criptografados em Base64
+     * @return Textos descriptografados na mesma ordem (null nas posições que falharem)
+     */
+    public static List<String> descriptografarLote(List<String> textosCriptografados) {
+        List<String> resultado = new ArrayList<>(textosCriptografados.size());
+        for (String texto : textosCriptografados) {
+            resultado.add(descriptografarOuNulo(texto));
+        }
+        return resultado;
+    }
+
+    private static String descriptografarOuNulo(String textoCriptografado) {
+        try {
+            return descriptografar(textoCriptografado);
+        } catch (Exception e) {
+            return null;
+        }
     }
-}
 
+    private static Cipher criarCipher(int modo) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITMO);
+            cipher.init(modo, CHAVE);
+            return cipher;
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro ao inicializar cipher AES", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Executor dedicado e limitado para o BCrypt (criptografar e verificar senhas)
+ * Cada operação com custo 12 ocupa um núcleo por ~250ms: uma rajada de logins no início de um evento
+ * rodando nas threads das requisições travaria o chat e o check-in. Aqui o BCrypt usa no máximo
+ * bcrypt.threads threads (padrão: número de núcleos) e uma fila de bcrypt.fila tarefas; com a fila
+ * cheia a tarefa é recusada na hora (RejectedExecutionException) e o recurso responde 503.
+ * As threads só fazem o BCrypt: o restante do trabalho (banco) continua no executor do container.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BcryptExecutor {
+
+    // Sugestão de espera para o cliente quando a fila está cheia
+    private static final int RETRY_AFTER_SEGUNDOS = 1;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    @ConfigProperty(name = "bcrypt.threads", defaultValue = "0")
+    private int threads;
+
+    @Inject
+    @ConfigProperty(name = "bcrypt.fila", defaultValue = "64")
+    private int fila;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void iniciar() {
+        int total = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(total, total, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fila)),
+                tarefa -> {
+                    Thread thread = threadFactory.newThread(tarefa);
+                    thread.setName("bcrypt-" + contador.incrementAndGet());
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    private void parar() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Executa uma operação de BCrypt no executor dedicado
+     * @param tarefa Operação (ex.: BcryptUtil.criptografarSenha)
+     * @return Resultado assíncrono da operação
+     * @throws RejectedExecutionException se a fila estiver cheia (responder com respostaOcupado())
+     */
+    public <T> CompletableFuture<T> executar(Supplier<T> tarefa) {
+        return CompletableFuture.supplyAsync(tarefa, executor);
+    }
+
+    /**
+     * Resposta 503 para quando o executor recusa a tarefa
+     */
+    public static Response respostaOcupado() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SEGUNDOS)
+                .entity("{\"error\":\"Servidor ocupado, tente novamente em instantes\"}")
+                .build();
+    }
+
+    /**
+     * Exceção original de uma etapa assíncrona (sem o CompletionException que a envolve)
+     */
+    public static Throwable causa(Throwable erro) {
+        if ((erro instanceof CompletionException || erro instanceof ExecutionException) && erro.getCause() != null) {
+            return erro.getCause();
+        }
+        return erro;
+    }
+}
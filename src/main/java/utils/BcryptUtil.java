@@ -43,6 +43,30 @@ public class BcryptUtil {
         }
     }
 
+    /**
+     * Verifica a senha fornecida contra a senha armazenada do usuário,
+     * aceitando senhas antigas ainda não migradas para BCrypt.
+     * 
+     * @param senhaFornecida A senha em texto plano informada
+     * @param senhaArmazenada A senha armazenada no banco (hash BCrypt ou texto plano legado)
+     * @return true se a senha corresponder, false caso contrário
+     */
+    public static boolean verificarSenhaArmazenada(String senhaFornecida, String senhaArmazenada) {
+        if (senhaFornecida == null || senhaArmazenada == null) {
+            return false;
+        }
+        
+        // Se a senha armazenada não for um hash BCrypt (migração de dados antigos),
+        // compara diretamente
+        if (!isBcryptHash(senhaArmazenada)) {
+            // Para compatibilidade com senhas antigas não criptografadas
+            // (o MigrarSenhasBcrypt converte essas senhas na inicialização)
+            return senhaFornecida.equals(senhaArmazenada);
+        }
+        
+        return verificarSenha(senhaFornecida, senhaArmazenada);
+    }
+
     /**
      * Verifica se um hash é um hash BCrypt válido.
      * Útil para migração de senhas antigas.
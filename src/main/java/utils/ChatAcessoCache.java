@@ -0,0 +1,94 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache em memória do acesso dos usuários às salas do chat
+ * Guarda, por (usuarioId, salaId), o instante em que o acesso expira: até lá a verificação
+ * é respondida sem ir ao banco. Usuários sem acesso ficam em cache por pouco tempo, para que
+ * um check-in feito em outra instância seja percebido rapidamente.
+ */
+public class ChatAcessoCache {
+
+    // Tempo que uma ausência de acesso fica em cache
+    private static final long TTL_SEM_ACESSO_MS = 5000;
+
+    // Acima deste número de entradas, as expiradas são descartadas
+    private static final int MAXIMO_ENTRADAS = 50000;
+
+    // Mapa de (usuarioId, salaId) -> Entrada
+    private static final Map<Long, Entrada> acessos = new ConcurrentHashMap<>();
+
+    private static final class Entrada {
+        private final long acessoExpiraEm;
+        private final long validoAte;
+
+        private Entrada(long acessoExpiraEm, long validoAte) {
+            this.acessoExpiraEm = acessoExpiraEm;
+            this.validoAte = validoAte;
+        }
+    }
+
+    /**
+     * Consulta o acesso em cache
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     * @return true/false se estiver em cache, ou null se for preciso consultar o banco
+     */
+    public static Boolean verificar(Integer usuarioId, Integer salaId) {
+        Entrada entrada = acessos.get(chave(usuarioId, salaId));
+        long agora = System.currentTimeMillis();
+        if (entrada == null || agora >= entrada.validoAte) {
+            return null;
+        }
+        return agora < entrada.acessoExpiraEm;
+    }
+
+    /**
+     * Registra o instante de expiração do acesso (null se o usuário não participa da sala)
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     * @param acessoExpiraEm Instante (epoch ms) em que o acesso expira, ou null
+     */
+    public static void registrar(Integer usuarioId, Integer salaId, Long acessoExpiraEm) {
+        limparSeNecessario();
+        long agora = System.currentTimeMillis();
+        Entrada entrada = acessoExpiraEm != null && acessoExpiraEm > agora
+                ? new Entrada(acessoExpiraEm, acessoExpiraEm)
+                : new Entrada(0, agora + TTL_SEM_ACESSO_MS);
+        acessos.put(chave(usuarioId, salaId), entrada);
+    }
+
+    /**
+     * Descarta o acesso em cache (próxima verificação consulta o banco)
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     */
+    public static void invalidar(Integer usuarioId, Integer salaId) {
+        acessos.remove(chave(usuarioId, salaId));
+    }
+
+    /**
+     * Limpa todo o cache (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        acessos.clear();
+    }
+
+    private static Long chave(Integer usuarioId, Integer salaId) {
+        return ((long) usuarioId << 32) | (salaId & 0xFFFFFFFFL);
+    }
+
+    private static void limparSeNecessario() {
+        if (acessos.size() < MAXIMO_ENTRADAS) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+        acessos.values().removeIf(e -> agora >= e.validoAte);
+        if (acessos.size() >= MAXIMO_ENTRADAS) {
+            // Ainda cheio: recomeça do zero em vez de crescer sem limite
+            acessos.clear();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * ID da última alteração (edição ou remoção de mensagem) de cada sala, em memória
+ * Permite responder "não há alterações após o cursor do cliente" sem consultar o banco a cada
+ * requisição de Long Polling. Salas desconhecidas são carregadas do banco na primeira consulta
+ * e atualizadas a cada alteração distribuída (local ou vinda de outra instância).
+ */
+public class ChatAlteracoes {
+
+    // Mapa de salaId -> ID da última alteração conhecida
+    private static final Map<Integer, Integer> ultimas = new ConcurrentHashMap<>();
+
+    /**
+     * Retorna o ID da última alteração da sala
+     * @param salaId ID da sala
+     * @param carregador Busca o ID da última alteração no banco (0 se não houver)
+     * @return ID da última alteração, ou 0 se a sala não tiver alterações
+     */
+    public static int ultimaAlteracao(Integer salaId, Supplier<Integer> carregador) {
+        Integer ultima = ultimas.get(salaId);
+        if (ultima == null) {
+            ultima = ultimas.merge(salaId, carregador.get(), Math::max);
+        }
+        return ultima;
+    }
+
+    /**
+     * Registra uma alteração distribuída na sala
+     * @param salaId ID da sala
+     * @param alteracaoId ID da alteração
+     */
+    public static void registrar(Integer salaId, Integer alteracaoId) {
+        // Mantém o maior valor: um carregamento do banco concorrente não volta o cursor para trás
+        ultimas.merge(salaId, alteracaoId, Math::max);
+    }
+
+    /**
+     * Limpa todas as salas (útil para testes ou quando alterações de outras instâncias podem ter sido perdidas)
+     */
+    public static void limparTodos() {
+        ultimas.clear();
+    }
+}
@@ -0,0 +1,367 @@
+package utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Índice invertido em memória para busca de mensagens por sala
+ * As mensagens ficam criptografadas no banco, então a busca não pode ser feita em SQL: cada sala
+ * tem um mapa ordenado de termo -> IDs das mensagens que o contêm, montado a partir do texto
+ * descriptografado na primeira busca (histórico mais recente primeiro) e atualizado a cada nova mensagem.
+ * Os termos são normalizados (minúsculas, sem acentos) e cada palavra da busca é tratada como prefixo.
+ * O índice existe apenas no heap: nenhum texto é gravado em disco.
+ * A memória é limitada pelo total de ocorrências indexadas; acima do limite, as salas menos
+ * acessadas recentemente são descartadas (e reconstruídas na próxima busca).
+ */
+public class ChatBuscaIndice {
+
+    // Tamanho mínimo de uma palavra da busca (prefixos muito curtos casariam com quase tudo)
+    public static final int TAMANHO_MINIMO_TERMO = 2;
+
+    // Termos maiores são truncados (prefixos continuam funcionando)
+    private static final int TAMANHO_MAXIMO_TERMO = 32;
+
+    // Mensagens mais recentes indexadas por sala
+    private static final int MAXIMO_MENSAGENS_POR_SALA = 20000;
+
+    // Total de ocorrências (termo, mensagem) em memória, somando todas as salas (~4 bytes cada)
+    private static final long MAXIMO_OCORRENCIAS = 5_000_000L;
+
+    private static final Pattern SEPARADOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+
+    // Mapa de salaId -> Índice da sala
+    private static final Map<Integer, Indice> salas = new ConcurrentHashMap<>();
+
+    private static final AtomicLong totalOcorrencias = new AtomicLong();
+
+    /**
+     * Índice de uma sala: termos em ordem alfabética (busca por prefixo com subMap)
+     * Protegido pelo lock do próprio objeto; a construção a partir do histórico usa um lock separado
+     * para que novas mensagens continuem sendo indexadas enquanto o histórico é carregado.
+     */
+    private static final class Indice {
+        private final TreeMap<String, Ocorrencias> termos = new TreeMap<>();
+        private final ReentrantLock construcao = new ReentrantLock();
+        private volatile boolean pronto;
+        private volatile long ultimoAcesso = System.currentTimeMillis();
+        private long ocorrencias;
+        private boolean descartado;
+
+        private synchronized void adicionar(int mensagemId, Set<String> termosMensagem) {
+            if (descartado) {
+                return;
+            }
+            for (String termo : termosMensagem) {
+                if (termos.computeIfAbsent(termo, k -> new Ocorrencias()).adicionar(mensagemId)) {
+                    ocorrencias++;
+                    totalOcorrencias.incrementAndGet();
+                }
+            }
+        }
+
+        private synchronized void removerDeTodos(int mensagemId) {
+            Iterator<Ocorrencias> listas = termos.values().iterator();
+            while (listas.hasNext()) {
+                Ocorrencias lista = listas.next();
+                if (lista.remover(mensagemId)) {
+                    ocorrencias--;
+                    totalOcorrencias.decrementAndGet();
+                    if (lista.tamanho == 0) {
+                        listas.remove();
+                    }
+                }
+            }
+        }
+
+        /**
+         * IDs das mensagens que contêm todos os prefixos, em ordem crescente
+         */
+        private synchronized int[] buscar(List<String> prefixos) {
+            int[] resultado = null;
+            for (String prefixo : prefixos) {
+                int[] uniao = uniao(termos.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false).values());
+                resultado = resultado == null ? uniao : intersecao(resultado, uniao);
+                if (resultado.length == 0) {
+                    break;
+                }
+            }
+            return resultado != null ? resultado : new int[0];
+        }
+
+        private synchronized void descartar() {
+            descartado = true;
+            totalOcorrencias.addAndGet(-ocorrencias);
+            ocorrencias = 0;
+            termos.clear();
+        }
+    }
+
+    /**
+     * IDs de mensagens em ordem crescente (array com crescimento dinâmico)
+     * O caso comum é acrescentar no fim (mensagem nova); o histórico é carregado do mais novo para o mais antigo.
+     */
+    private static final class Ocorrencias {
+        private int[] ids = new int[4];
+        private int tamanho;
+
+        private boolean adicionar(int id) {
+            int posicao = tamanho > 0 && ids[tamanho - 1] < id ? tamanho : Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao >= 0 && posicao < tamanho) {
+                // Já indexada
+                return false;
+            }
+            if (posicao < 0) {
+                posicao = -posicao - 1;
+            }
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            System.arraycopy(ids, posicao, ids, posicao + 1, tamanho - posicao);
+            ids[posicao] = id;
+            tamanho++;
+            return true;
+        }
+
+        private boolean remover(int id) {
+            int posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicao + 1, ids, posicao, tamanho - posicao - 1);
+            tamanho--;
+            return true;
+        }
+    }
+
+    /**
+     * Busca mensagens de uma sala que contenham todas as palavras informadas (como prefixo)
+     * Se a sala ainda não estiver indexada, o índice é montado com o carregador antes da busca.
+     * @param salaId ID da sala
+     * @param consulta Texto digitado pelo usuário
+     * @param beforeId Retorna apenas mensagens com ID menor que este (paginação), ou null
+     * @param limite Número máximo de IDs
+     * @param carregador Recebe um ID (ou null para as mais recentes) e retorna as mensagens anteriores
+     *                   a ele no banco, descriptografadas; lista vazia quando não houver mais
+     * @return IDs encontrados, do mais recente para o mais antigo
+     */
+    public static List<Integer> buscar(Integer salaId, String consulta, Integer beforeId, int limite,
+                                       Function<Integer, List<ChatMensagemResponse>> carregador) {
+        List<String> prefixos = new ArrayList<>(extrairTermos(consulta));
+        List<Integer> resultado = new ArrayList<>();
+        if (prefixos.isEmpty()) {
+            return resultado;
+        }
+
+        int[] ids = obterOuConstruir(salaId, carregador).buscar(prefixos);
+
+        // Do mais recente para o mais antigo, a partir de beforeId
+        int fim = beforeId != null ? Arrays.binarySearch(ids, beforeId) : ids.length;
+        if (fim < 0) {
+            fim = -fim - 1;
+        }
+        for (int i = fim - 1; i >= 0 && resultado.size() < limite; i--) {
+            resultado.add(ids[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Indexa uma nova mensagem (se a sala já estiver indexada ou em construção)
+     * @param mensagem Mensagem descriptografada
+     */
+    public static void adicionar(ChatMensagemResponse mensagem) {
+        Indice indice = salas.get(mensagem.getSalaId());
+        if (indice != null && mensagem.getMensagem() != null) {
+            indice.adicionar(mensagem.getId(), extrairTermos(mensagem.getMensagem()));
+            if (totalOcorrencias.get() > MAXIMO_OCORRENCIAS) {
+                limparSeNecessario(indice);
+            }
+        }
+    }
+
+    /**
+     * Remove uma mensagem do índice da sala (edição ou remoção)
+     * O texto antigo não é necessário: a mensagem é procurada em todos os termos da sala,
+     * o que é aceitável por ser raro em comparação com o envio de mensagens.
+     * @param salaId ID da sala
+     * @param mensagemId ID da mensagem
+     */
+    public static void remover(Integer salaId, Integer mensagemId) {
+        Indice indice = salas.get(salaId);
+        if (indice != null) {
+            indice.removerDeTodos(mensagemId);
+        }
+    }
+
+    /**
+     * Extrai os termos normalizados de um texto (minúsculas, sem acentos, sem pontuação)
+     * @param texto Texto descriptografado
+     * @return Termos distintos, na ordem em que aparecem
+     */
+    public static Set<String> extrairTermos(String texto) {
+        Set<String> termos = new LinkedHashSet<>();
+        if (texto == null) {
+            return termos;
+        }
+        String normalizado = ACENTOS.matcher(Normalizer.normalize(texto.toLowerCase(Locale.ROOT), Normalizer.Form.NFD))
+                .replaceAll("");
+        for (String termo : SEPARADOR.split(normalizado)) {
+            if (termo.length() >= TAMANHO_MINIMO_TERMO) {
+                termos.add(termo.length() > TAMANHO_MAXIMO_TERMO ? termo.substring(0, TAMANHO_MAXIMO_TERMO) : termo);
+            }
+        }
+        return termos;
+    }
+
+    /**
+     * Descarta o índice de uma sala (próxima busca reconstrói a partir do histórico)
+     * @param salaId ID da sala
+     */
+    public static void invalidar(Integer salaId) {
+        Indice indice = salas.remove(salaId);
+        if (indice != null) {
+            indice.descartar();
+        }
+    }
+
+    /**
+     * Retorna o total de ocorrências indexadas em todas as salas (para monitoramento)
+     * @return Ocorrências (termo, mensagem) em memória
+     */
+    public static long contarOcorrencias() {
+        return totalOcorrencias.get();
+    }
+
+    /**
+     * Limpa todos os índices (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        for (Integer salaId : new ArrayList<>(salas.keySet())) {
+            invalidar(salaId);
+        }
+    }
+
+    private static Indice obterOuConstruir(Integer salaId, Function<Integer, List<ChatMensagemResponse>> carregador) {
+        Indice indice = salas.computeIfAbsent(salaId, k -> new Indice());
+        indice.ultimoAcesso = System.currentTimeMillis();
+        if (indice.pronto) {
+            return indice;
+        }
+
+        // Apenas uma construção por sala; as demais buscas aguardam o índice ficar pronto
+        indice.construcao.lock();
+        try {
+            if (!indice.pronto) {
+                construir(salaId, indice, carregador);
+                indice.pronto = true;
+            }
+        } catch (RuntimeException e) {
+            salas.remove(salaId, indice);
+            indice.descartar();
+            throw e;
+        } finally {
+            indice.construcao.unlock();
+        }
+
+        limparSeNecessario(indice);
+        return indice;
+    }
+
+    /**
+     * Indexa o histórico da sala do mais recente para o mais antigo, até o limite por sala
+     * O índice já está no mapa: mensagens enviadas durante a construção são indexadas normalmente.
+     */
+    private static void construir(Integer salaId, Indice indice, Function<Integer, List<ChatMensagemResponse>> carregador) {
+        Integer antesDe = null;
+        int indexadas = 0;
+        while (indexadas < MAXIMO_MENSAGENS_POR_SALA) {
+            List<ChatMensagemResponse> pagina = carregador.apply(antesDe);
+            if (pagina.isEmpty()) {
+                break;
+            }
+            for (ChatMensagemResponse mensagem : pagina) {
+                if (mensagem.getMensagem() != null) {
+                    indice.adicionar(mensagem.getId(), extrairTermos(mensagem.getMensagem()));
+                }
+                antesDe = antesDe == null ? mensagem.getId() : Math.min(antesDe, mensagem.getId());
+            }
+            indexadas += pagina.size();
+        }
+    }
+
+    /**
+     * Descarta as salas menos acessadas recentemente enquanto o total de ocorrências estiver acima do limite
+     * @param atual Índice que acabou de ser usado (nunca descartado aqui)
+     */
+    private static void limparSeNecessario(Indice atual) {
+        while (totalOcorrencias.get() > MAXIMO_OCORRENCIAS) {
+            Map.Entry<Integer, Indice> maisAntiga = salas.entrySet().stream()
+                    .filter(e -> e.getValue() != atual)
+                    .min(Comparator.comparingLong(e -> e.getValue().ultimoAcesso))
+                    .orElse(null);
+            if (maisAntiga == null) {
+                return;
+            }
+            if (salas.remove(maisAntiga.getKey(), maisAntiga.getValue())) {
+                maisAntiga.getValue().descartar();
+            }
+        }
+    }
+
+    private static int[] uniao(Iterable<Ocorrencias> listas) {
+        int total = 0;
+        for (Ocorrencias lista : listas) {
+            total += lista.tamanho;
+        }
+        int[] ids = new int[total];
+        int posicao = 0;
+        for (Ocorrencias lista : listas) {
+            System.arraycopy(lista.ids, 0, ids, posicao, lista.tamanho);
+            posicao += lista.tamanho;
+        }
+        Arrays.sort(ids);
+
+        // Remove repetidos (mesma mensagem com vários termos do mesmo prefixo)
+        int distintos = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distintos++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distintos);
+    }
+
+    private static int[] intersecao(int[] a, int[] b) {
+        int[] resultado = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                resultado[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(resultado, k);
+    }
+}
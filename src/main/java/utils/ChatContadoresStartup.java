@@ -0,0 +1,33 @@
+package utils;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import repository.ChatParticipanteRepository;
+
+/**
+ * Carrega na subida da aplicação os contadores de mensagens não lidas a partir dos cursores de leitura
+ */
+@Singleton
+@Startup
+public class ChatContadoresStartup {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatContadoresStartup.class.getName());
+
+    @EJB
+    private ChatParticipanteRepository participanteRepository;
+
+    @PostConstruct
+    public void init() {
+        try {
+            participanteRepository.carregarContadoresNaoLidas();
+        } catch (Exception e) {
+            // Sem a carga os contadores começam zerados; a aplicação continua funcionando
+            LOGGER.log(Level.WARNING, "Falha ao carregar contadores de mensagens não lidas", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Formatos de exportação do histórico do chat (NDJSON e CSV)
+ * Cada página de mensagens é escrita assim que descriptografada, sem acumular o histórico em memória.
+ * O e-mail dos participantes não é exportado.
+ */
+public class ChatExportacao {
+
+    public static final String FORMATO_NDJSON = "ndjson";
+    public static final String FORMATO_CSV = "csv";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CABECALHO_CSV = "id,usuario_id,usuario_nome,criado_em,editado_em,mensagem\n";
+
+    /**
+     * Escreve o início do arquivo (cabeçalho do CSV; nada para NDJSON)
+     * @param formato FORMATO_NDJSON ou FORMATO_CSV
+     * @param saida Destino
+     */
+    public static void escreverInicio(String formato, Writer saida) throws IOException {
+        if (FORMATO_CSV.equals(formato)) {
+            saida.write(CABECALHO_CSV);
+        }
+    }
+
+    /**
+     * Escreve uma página de mensagens
+     * @param formato FORMATO_NDJSON ou FORMATO_CSV
+     * @param mensagens Mensagens descriptografadas, em ordem de ID
+     * @param saida Destino
+     */
+    public static void escrever(String formato, List<ChatMensagemResponse> mensagens, Writer saida) throws IOException {
+        for (ChatMensagemResponse mensagem : mensagens) {
+            if (FORMATO_CSV.equals(formato)) {
+                saida.write(String.valueOf(mensagem.getId()));
+                saida.write(',');
+                saida.write(String.valueOf(mensagem.getUsuarioId()));
+                saida.write(',');
+                saida.write(csv(mensagem.getUsuarioNome()));
+                saida.write(',');
+                saida.write(data(mensagem.getCriadoEm()));
+                saida.write(',');
+                saida.write(data(mensagem.getEditadoEm()));
+                saida.write(',');
+                saida.write(csv(mensagem.getMensagem()));
+                saida.write('\n');
+            } else {
+                Map<String, Object> linha = new LinkedHashMap<>();
+                linha.put("id", mensagem.getId());
+                linha.put("usuarioId", mensagem.getUsuarioId());
+                linha.put("usuarioNome", mensagem.getUsuarioNome());
+                linha.put("criadoEm", mensagem.getCriadoEm() != null ? data(mensagem.getCriadoEm()) : null);
+                linha.put("editadoEm", mensagem.getEditadoEm() != null ? data(mensagem.getEditadoEm()) : null);
+                linha.put("mensagem", mensagem.getMensagem());
+                saida.write(MAPPER.writeValueAsString(linha));
+                saida.write('\n');
+            }
+        }
+    }
+
+    private static String data(Date data) {
+        return data != null ? DateTimeFormatter.ISO_INSTANT.format(data.toInstant()) : "";
+    }
+
+    /**
+     * Valor de uma célula do CSV
+     * Textos iniciados por =, +, -, @, tab ou CR recebem o prefixo ' e vão entre aspas, para que
+     * planilhas não os interpretem como fórmula (mensagens e nomes são escritos pelos participantes).
+     */
+    private static String csv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (!valor.isEmpty() && "=+-@\t\r".indexOf(valor.charAt(0)) >= 0) {
+            return "\"'" + valor.replace("\"", "\"\"") + '"';
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,139 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limite de envio de mensagens do chat por usuário e por sala (token bucket), em memória
+ * Cada balde guarda apenas o instante teórico em que volta a ficar cheio, atualizado com CAS
+ * (sem locks). Baldes que já voltaram a ficar cheios equivalem a baldes novos e são descartados
+ * periodicamente.
+ */
+public class ChatLimiteEnvio {
+
+    // Usuário: rajada de 5 mensagens, depois 1 por segundo
+    private static final int CAPACIDADE_USUARIO = 5;
+    private static final long INTERVALO_USUARIO_NS = TimeUnit.SECONDS.toNanos(1);
+
+    // Sala: rajada de 30 mensagens, depois 10 por segundo (somando todos os usuários)
+    private static final int CAPACIDADE_SALA = 30;
+    private static final long INTERVALO_SALA_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // A cada tantas verificações, descarta os baldes ociosos
+    private static final int VERIFICACOES_POR_LIMPEZA = 1024;
+
+    private static final Map<Integer, Balde> usuarios = new ConcurrentHashMap<>();
+    private static final Map<Integer, Balde> salas = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger verificacoes = new AtomicInteger();
+    private static final LongAdder limitadosUsuario = new LongAdder();
+    private static final LongAdder limitadosSala = new LongAdder();
+
+    /**
+     * Balde de tokens, representado pelo instante (nanoTime) em que estará cheio novamente
+     * Consumir um token avança esse instante em um intervalo; o envio é recusado se ele ficar
+     * mais de (capacidade - 1) intervalos à frente do momento atual.
+     */
+    private static final class Balde {
+        private final AtomicLong cheioEm;
+
+        private Balde(long agora) {
+            this.cheioEm = new AtomicLong(agora);
+        }
+
+        /**
+         * @return 0 se o token foi consumido, ou a espera em nanossegundos até haver um token
+         */
+        private long consumir(long agora, int capacidade, long intervalo) {
+            while (true) {
+                long atual = cheioEm.get();
+                long base = Math.max(atual, agora);
+                long espera = base - agora - (capacidade - 1) * intervalo;
+                if (espera > 0) {
+                    return espera;
+                }
+                if (cheioEm.compareAndSet(atual, base + intervalo)) {
+                    return 0;
+                }
+            }
+        }
+
+        private void devolver(long intervalo) {
+            cheioEm.addAndGet(-intervalo);
+        }
+
+        private boolean ocioso(long agora) {
+            return cheioEm.get() <= agora;
+        }
+    }
+
+    /**
+     * Consome um envio do usuário e um da sala
+     * @param usuarioId ID do usuário
+     * @param salaId ID da sala
+     * @return 0 se o envio está liberado, ou o número de segundos a aguardar (Retry-After)
+     */
+    public static long consumir(Integer usuarioId, Integer salaId) {
+        long agora = System.nanoTime();
+        limparSeNecessario(agora);
+
+        Balde usuario = usuarios.computeIfAbsent(usuarioId, k -> new Balde(agora));
+        long espera = usuario.consumir(agora, CAPACIDADE_USUARIO, INTERVALO_USUARIO_NS);
+        if (espera > 0) {
+            limitadosUsuario.increment();
+            return segundos(espera);
+        }
+
+        Balde sala = salas.computeIfAbsent(salaId, k -> new Balde(agora));
+        espera = sala.consumir(agora, CAPACIDADE_SALA, INTERVALO_SALA_NS);
+        if (espera > 0) {
+            // O envio não aconteceu: o token do usuário volta para o balde
+            usuario.devolver(INTERVALO_USUARIO_NS);
+            limitadosSala.increment();
+            return segundos(espera);
+        }
+        return 0;
+    }
+
+    /**
+     * Retorna o número de envios recusados pelo limite do usuário (para monitoramento)
+     * @return Envios recusados desde a subida da aplicação
+     */
+    public static long contarLimitadosUsuario() {
+        return limitadosUsuario.sum();
+    }
+
+    /**
+     * Retorna o número de envios recusados pelo limite da sala (para monitoramento)
+     * @return Envios recusados desde a subida da aplicação
+     */
+    public static long contarLimitadosSala() {
+        return limitadosSala.sum();
+    }
+
+    /**
+     * Limpa todos os baldes e contadores (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        usuarios.clear();
+        salas.clear();
+        limitadosUsuario.reset();
+        limitadosSala.reset();
+    }
+
+    private static long segundos(long esperaNs) {
+        return Math.max(1, (esperaNs + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static void limparSeNecessario(long agora) {
+        if (verificacoes.incrementAndGet() % VERIFICACOES_POR_LIMPEZA != 0) {
+            return;
+        }
+        usuarios.values().removeIf(b -> b.ocioso(agora));
+        salas.values().removeIf(b -> b.ocioso(agora));
+    }
+}
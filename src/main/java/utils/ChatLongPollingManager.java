@@ -1,108 +1,396 @@
 package utils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import model.dto.ChatMensagemResponse;
 
 /**
  * Gerenciador de conexões Long Polling para o chat
- * Mantém uma lista de threads aguardando por novas mensagens em cada sala
+ * Mantém as requisições suspensas (AsyncResponse) aguardando por novas mensagens em cada sala.
+ * Nenhuma thread do container fica presa durante a espera: cada cliente aguardando custa apenas memória.
+ * A notificação carrega a nova mensagem serializada uma única vez; clientes que só não têm essa
+ * mensagem recebem os mesmos bytes, sem nova consulta ao banco.
+ *
+ * As salas são distribuídas em faixas, cada uma com seu próprio lock. Em cada sala as requisições
+ * formam uma lista duplamente encadeada (inclusão e remoção O(1), sem cópia de array).
+ * Cada sala tem um contador de geração (guardado na sua faixa) incrementado a cada notificação da sala:
+ * quem consulta as mensagens antes de se registrar informa a geração observada e, se houve notificação
+ * nesse intervalo, é liberado na hora em vez de aguardar. Notificações de outras salas da mesma faixa
+ * não afetam a geração. Os contadores não são removidos (uma entrada por sala já notificada): descartar
+ * um contador permitiria que a geração voltasse a um valor já observado e a notificação se perdesse.
  */
 public class ChatLongPollingManager {
-    
-    // Mapa de salaId -> Lista de latches aguardando
-    private static final Map<Integer, List<CountDownLatch>> waitingRequests = new ConcurrentHashMap<>();
-    
+
+    private static final Logger LOGGER = Logger.getLogger(ChatLongPollingManager.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Número de faixas de lock (potência de 2)
+    private static final int FAIXAS = 64;
+
+    private static final Faixa[] faixas = new Faixa[FAIXAS];
+
+    // Requisições liberadas por nova mensagem: respondidas com o corpo compartilhado / que precisaram consultar
+    private static final LongAdder respostasProntas = new LongAdder();
+    private static final LongAdder respostasConsultadas = new LongAdder();
+
+    static {
+        for (int i = 0; i < FAIXAS; i++) {
+            faixas[i] = new Faixa();
+        }
+    }
+
     /**
-     * Registra uma thread para aguardar por novas mensagens em uma sala
+     * Conjunto de salas protegido por um único lock (o próprio objeto)
+     */
+    private static final class Faixa {
+        // Mapa de salaId -> primeira requisição aguardando na sala
+        private final Map<Integer, Aguardando> inicios = new HashMap<>();
+        // Mapa de salaId -> geração da sala (ausente = 0)
+        private final Map<Integer, Long> geracoes = new HashMap<>();
+        private int total;
+
+        private long geracao(Integer salaId) {
+            return geracoes.getOrDefault(salaId, 0L);
+        }
+
+        private void avancarGeracao(Integer salaId) {
+            geracoes.merge(salaId, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Requisição suspensa aguardando por novas mensagens.
+     * Pode ser concluída uma única vez: por notificação, por timeout ou diretamente pelo chamador.
+     */
+    public static final class Aguardando {
+        private final Integer salaId;
+        private final AsyncResponse asyncResponse;
+        private final Integer after;
+        private final BiConsumer<AsyncResponse, byte[]> aoNotificar;
+        private final AtomicBoolean concluido = new AtomicBoolean(false);
+
+        // Encadeamento na sala (protegido pelo lock da faixa)
+        private Aguardando anterior;
+        private Aguardando proximo;
+        private boolean registrado;
+
+        private Aguardando(Integer salaId, AsyncResponse asyncResponse, Integer after,
+                           BiConsumer<AsyncResponse, byte[]> aoNotificar) {
+            this.salaId = salaId;
+            this.asyncResponse = asyncResponse;
+            this.after = after;
+            this.aoNotificar = aoNotificar;
+        }
+
+        /**
+         * Marca a requisição como concluída
+         * @return true se esta chamada foi a responsável pela conclusão (quem recebe true deve responder)
+         */
+        public boolean marcarConcluido() {
+            return concluido.compareAndSet(false, true);
+        }
+
+        public AsyncResponse getAsyncResponse() {
+            return asyncResponse;
+        }
+    }
+
+    /**
+     * Retorna a geração atual da sala, a ser lida ANTES de consultar as mensagens
      * @param salaId ID da sala
-     * @param latch CountDownLatch que será liberado quando houver nova mensagem
+     * @return Geração (muda a cada notificação da sala)
      */
-    public static void aguardarMensagens(Integer salaId, CountDownLatch latch) {
-        waitingRequests.computeIfAbsent(salaId, k -> new CopyOnWriteArrayList<>()).add(latch);
+    public static long geracaoAtual(Integer salaId) {
+        Faixa faixa = faixa(salaId);
+        synchronized (faixa) {
+            return faixa.geracao(salaId);
+        }
     }
-    
+
     /**
-     * Remove um latch da lista de espera
+     * Suspende uma requisição para aguardar por novas mensagens em uma sala
+     * Em caso de timeout, a requisição é respondida com um array vazio.
+     * Se houve notificação depois da geração informada, aoNotificar é chamado imediatamente.
      * @param salaId ID da sala
-     * @param latch CountDownLatch a ser removido
+     * @param asyncResponse Requisição suspensa
+     * @param after ID da última mensagem recebida pelo cliente
+     * @param geracao Geração lida com geracaoAtual antes da consulta às mensagens
+     * @param timeout Tempo máximo de espera
+     * @param unit Unidade de tempo
+     * @param aoNotificar Callback executado quando houver nova mensagem (responsável por chamar resume).
+     *                    Recebe o corpo JSON já pronto quando a nova mensagem é a única que falta ao cliente,
+     *                    ou null quando for preciso buscar as mensagens posteriores a after.
+     * @return Registro da requisição aguardando
+     */
+    public static Aguardando aguardarMensagens(Integer salaId, AsyncResponse asyncResponse, Integer after,
+                                               long geracao, long timeout, TimeUnit unit,
+                                               BiConsumer<AsyncResponse, byte[]> aoNotificar) {
+        Aguardando aguardando = new Aguardando(salaId, asyncResponse, after, aoNotificar);
+
+        asyncResponse.setTimeoutHandler(ar -> {
+            if (aguardando.marcarConcluido()) {
+                removerAguardando(aguardando);
+                ar.resume(Response.ok(List.of()).build());
+            }
+        });
+        asyncResponse.setTimeout(timeout, unit);
+
+        // Garante a remoção da lista de espera quando a requisição terminar por qualquer motivo
+        asyncResponse.register((CompletionCallback) erro -> removerAguardando(aguardando));
+
+        boolean perdeuNotificacao;
+        Faixa faixa = faixa(salaId);
+        synchronized (faixa) {
+            perdeuNotificacao = faixa.geracao(salaId) != geracao;
+            if (!perdeuNotificacao) {
+                incluir(faixa, aguardando);
+            }
+        }
+
+        // Houve notificação entre a consulta e o registro: busca novamente em vez de aguardar
+        if (perdeuNotificacao && aguardando.marcarConcluido()) {
+            liberar(aguardando, null);
+        }
+        return aguardando;
+    }
+
+    /**
+     * Remove uma requisição da lista de espera
+     * @param aguardando Requisição a ser removida
      */
-    public static void removerAguardando(Integer salaId, CountDownLatch latch) {
-        List<CountDownLatch> latches = waitingRequests.get(salaId);
-        if (latches != null) {
-            latches.remove(latch);
-            // Remove a entrada do mapa se a lista ficar vazia
-            if (latches.isEmpty()) {
-                waitingRequests.remove(salaId);
+    public static void removerAguardando(Aguardando aguardando) {
+        Faixa faixa = faixa(aguardando.salaId);
+        synchronized (faixa) {
+            if (aguardando.registrado) {
+                desencadear(faixa, aguardando);
             }
         }
     }
-    
+
     /**
-     * Notifica todas as threads aguardando por mensagens em uma sala
+     * Notifica todas as requisições aguardando por mensagens em uma sala
      * Chamado quando uma nova mensagem é enviada
-     * @param salaId ID da sala que recebeu nova mensagem
+     * @param mensagem Nova mensagem, já descriptografada
+     * @param idAnterior Clientes com after >= idAnterior só não têm esta mensagem (null se desconhecido)
      */
-    public static void notificarNovaMensagem(Integer salaId) {
-        List<CountDownLatch> latches = waitingRequests.get(salaId);
-        if (latches != null && !latches.isEmpty()) {
-            // Libera todos os latches aguardando
-            for (CountDownLatch latch : latches) {
-                latch.countDown();
+    public static void notificarNovaMensagem(ChatMensagemResponse mensagem, Integer idAnterior) {
+        // Retira a lista inteira da sala sob o lock; as respostas são enviadas fora dele
+        List<Aguardando> liberados;
+        Faixa faixa = faixa(mensagem.getSalaId());
+        synchronized (faixa) {
+            faixa.avancarGeracao(mensagem.getSalaId());
+            liberados = retirarSala(faixa, mensagem.getSalaId());
+        }
+
+        // Corpo serializado uma única vez, compartilhado por todos que só precisam desta mensagem
+        // (se a serialização falhar, todos buscam as mensagens posteriores)
+        byte[] corpo = null;
+        boolean serializado = false;
+        for (Aguardando aguardando : liberados) {
+            if (aguardando.marcarConcluido()) {
+                boolean somenteEsta = idAnterior != null
+                        && aguardando.after >= idAnterior && aguardando.after < mensagem.getId();
+                if (somenteEsta && !serializado) {
+                    corpo = serializar(mensagem);
+                    serializado = true;
+                }
+                somenteEsta = somenteEsta && corpo != null;
+                (somenteEsta ? respostasProntas : respostasConsultadas).increment();
+                liberar(aguardando, somenteEsta ? corpo : null);
             }
-            // Limpa a lista após notificar
-            latches.clear();
         }
     }
-    
+
     /**
-     * Aguarda por novas mensagens com timeout
+     * Libera todas as requisições aguardando em uma sala após uma edição ou remoção de mensagem
+     * Não há corpo pronto: cada requisição monta a resposta a partir dos seus cursores (aoNotificar com null).
      * @param salaId ID da sala
-     * @param timeout Tempo máximo de espera
-     * @param unit Unidade de tempo
-     * @return true se foi notificado antes do timeout, false se expirou
      */
-    public static boolean aguardarComTimeout(Integer salaId, long timeout, TimeUnit unit) {
-        CountDownLatch latch = new CountDownLatch(1);
-        aguardarMensagens(salaId, latch);
-        
-        try {
-            // Aguarda até ser notificado ou timeout
-            boolean notificado = latch.await(timeout, unit);
-            return notificado;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return false;
-        } finally {
-            // Remove o latch da lista de espera se ainda estiver lá
-            removerAguardando(salaId, latch);
-        }
-    }
-    
+    public static void notificarAlteracao(Integer salaId) {
+        List<Aguardando> liberados;
+        Faixa faixa = faixa(salaId);
+        synchronized (faixa) {
+            faixa.avancarGeracao(salaId);
+            liberados = retirarSala(faixa, salaId);
+        }
+
+        for (Aguardando aguardando : liberados) {
+            if (aguardando.marcarConcluido()) {
+                liberar(aguardando, null);
+            }
+        }
+    }
+
     /**
      * Retorna o número de conexões aguardando em uma sala (para debug/monitoramento)
      * @param salaId ID da sala
      * @return Número de conexões aguardando
      */
     public static int contarAguardando(Integer salaId) {
-        List<CountDownLatch> latches = waitingRequests.get(salaId);
-        return latches != null ? latches.size() : 0;
+        Faixa faixa = faixa(salaId);
+        synchronized (faixa) {
+            int total = 0;
+            for (Aguardando atual = faixa.inicios.get(salaId); atual != null; atual = atual.proximo) {
+                total++;
+            }
+            return total;
+        }
     }
-    
+
     /**
-     * Limpa todas as conexões aguardando (útil para testes ou shutdown)
+     * Retorna o número total de conexões aguardando em todas as salas (para monitoramento)
+     * @return Número de conexões aguardando
+     */
+    public static int contarTotalAguardando() {
+        int total = 0;
+        for (Faixa faixa : faixas) {
+            synchronized (faixa) {
+                total += faixa.total;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Retorna quantas requisições liberadas por nova mensagem foram respondidas com o corpo compartilhado
+     * (sem consulta ao banco), desde a subida (para monitoramento)
+     */
+    public static long contarRespostasProntas() {
+        return respostasProntas.sum();
+    }
+
+    /**
+     * Retorna quantas requisições liberadas por nova mensagem precisaram buscar as mensagens posteriores
+     * (cliente mais de uma mensagem atrás), desde a subida (para monitoramento)
+     */
+    public static long contarRespostasConsultadas() {
+        return respostasConsultadas.sum();
+    }
+
+    /**
+     * Responde todas as conexões aguardando com array vazio (útil para testes ou shutdown)
      */
     public static void limparTodos() {
-        for (List<CountDownLatch> latches : waitingRequests.values()) {
-            for (CountDownLatch latch : latches) {
-                latch.countDown();
+        for (Faixa faixa : faixas) {
+            List<Aguardando> liberados = new ArrayList<>();
+            synchronized (faixa) {
+                faixa.geracoes.replaceAll((salaId, geracao) -> geracao + 1);
+                for (Aguardando inicio : faixa.inicios.values()) {
+                    for (Aguardando atual = inicio; atual != null; atual = atual.proximo) {
+                        atual.registrado = false;
+                        liberados.add(atual);
+                    }
+                }
+                faixa.inicios.clear();
+                faixa.total = 0;
+            }
+            for (Aguardando aguardando : liberados) {
+                if (aguardando.marcarConcluido()) {
+                    aguardando.asyncResponse.resume(Response.ok(List.of()).build());
+                }
             }
-            latches.clear();
         }
-        waitingRequests.clear();
     }
-}
 
+    private static Faixa faixa(Integer salaId) {
+        int hash = salaId.hashCode();
+        return faixas[(hash ^ (hash >>> 16)) & (FAIXAS - 1)];
+    }
+
+    /**
+     * Retira da faixa a lista inteira de requisições de uma sala (chamado com o lock da faixa)
+     */
+    private static List<Aguardando> retirarSala(Faixa faixa, Integer salaId) {
+        List<Aguardando> retirados = new ArrayList<>();
+        Aguardando atual = faixa.inicios.remove(salaId);
+        while (atual != null) {
+            Aguardando proximo = atual.proximo;
+            atual.registrado = false;
+            atual.anterior = null;
+            atual.proximo = null;
+            faixa.total--;
+            retirados.add(atual);
+            atual = proximo;
+        }
+        return retirados;
+    }
+
+    private static void incluir(Faixa faixa, Aguardando aguardando) {
+        Aguardando inicio = faixa.inicios.get(aguardando.salaId);
+        aguardando.proximo = inicio;
+        if (inicio != null) {
+            inicio.anterior = aguardando;
+        }
+        faixa.inicios.put(aguardando.salaId, aguardando);
+        aguardando.registrado = true;
+        faixa.total++;
+    }
+
+    private static void desencadear(Faixa faixa, Aguardando aguardando) {
+        if (aguardando.anterior != null) {
+            aguardando.anterior.proximo = aguardando.proximo;
+        } else if (aguardando.proximo != null) {
+            faixa.inicios.put(aguardando.salaId, aguardando.proximo);
+        } else {
+            faixa.inicios.remove(aguardando.salaId);
+        }
+        if (aguardando.proximo != null) {
+            aguardando.proximo.anterior = aguardando.anterior;
+        }
+        aguardando.anterior = null;
+        aguardando.proximo = null;
+        aguardando.registrado = false;
+        faixa.total--;
+    }
+
+    /**
+     * Executa o callback de uma requisição já marcada como concluída
+     * Se o callback falhar (ex.: executor recusando a tarefa), a requisição é respondida com 503 aqui mesmo:
+     * concluída, ela não seria mais respondida pelo timeout. A falha não interrompe as demais requisições
+     * nem a distribuição da mensagem para os outros transportes.
+     */
+    private static void liberar(Aguardando aguardando, byte[] corpo) {
+        try {
+            aguardando.aoNotificar.accept(aguardando.asyncResponse, corpo);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Falha ao liberar requisição de Long Polling da sala " + aguardando.salaId, e);
+            try {
+                aguardando.asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, 1)
+                        .entity("{\"error\":\"Servidor ocupado, tente novamente em instantes\"}")
+                        .build());
+            } catch (RuntimeException erroResposta) {
+                LOGGER.log(Level.WARNING, "Falha ao responder requisição de Long Polling", erroResposta);
+            }
+        }
+    }
+
+    /**
+     * Corpo JSON com a nova mensagem, ou null se a serialização falhar (clientes buscam no banco)
+     */
+    private static byte[] serializar(ChatMensagemResponse mensagem) {
+        try {
+            return MAPPER.writeValueAsBytes(List.of(mensagem));
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.WARNING, "Erro ao serializar mensagem do chat", e);
+            return null;
+        }
+    }
+}
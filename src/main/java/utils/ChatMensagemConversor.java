@@ -0,0 +1,153 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import model.ChatMensagem;
+import model.ChatMensagemAlteracao;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import model.dto.ChatSalaDetalhadaResponse;
+
+/**
+ * Conversão de mensagens do chat (criptografadas no banco) para o DTO de resposta descriptografado
+ * Compartilhada entre os transportes do chat (REST, SSE e WebSocket)
+ * Mensagens removidas viram marcadores (mensagem = null, removidoEm preenchido), sem descriptografia.
+ */
+public class ChatMensagemConversor {
+
+    private static final String ERRO_DESCRIPTOGRAFAR = "[Erro ao descriptografar mensagem]";
+    private static final String ERRO_DESCRIPTOGRAFAR_ULTIMA = "[Erro ao descriptografar]";
+
+    /**
+     * Converte uma mensagem para DTO, descriptografando o texto
+     * @param mensagem Mensagem com usuário carregado
+     * @return DTO com texto em claro
+     */
+    public static ChatMensagemResponse converterParaResponse(ChatMensagem mensagem) {
+        ChatMensagemResponse dto = converterSemTexto(mensagem);
+        if (dto.getRemovidoEm() != null) {
+            return dto;
+        }
+
+        // Descriptografa mensagem
+        try {
+            String mensagemPlain = AesCryptoUtil.descriptografar(mensagem.getMensagem());
+            dto.setMensagem(mensagemPlain);
+        } catch (Exception e) {
+            dto.setMensagem(ERRO_DESCRIPTOGRAFAR);
+        }
+        return dto;
+    }
+
+    /**
+     * Converte uma página de mensagens para DTO, descriptografando todos os textos em lote
+     * @param mensagens Mensagens com usuário carregado
+     * @return DTOs com texto em claro, na mesma ordem
+     */
+    public static List<ChatMensagemResponse> converterLote(List<ChatMensagem> mensagens) {
+        List<String> textos = AesCryptoUtil.descriptografarLote(mensagens.stream()
+                .map(m -> m.getRemovidoEm() == null ? m.getMensagem() : null)
+                .collect(Collectors.toList()));
+
+        List<ChatMensagemResponse> resultado = new ArrayList<>(mensagens.size());
+        for (int i = 0; i < mensagens.size(); i++) {
+            ChatMensagemResponse dto = converterSemTexto(mensagens.get(i));
+            if (dto.getRemovidoEm() == null) {
+                dto.setMensagem(textos.get(i) != null ? textos.get(i) : ERRO_DESCRIPTOGRAFAR);
+            }
+            resultado.add(dto);
+        }
+        return resultado;
+    }
+
+    /**
+     * Converte uma página de alterações para DTO, com o estado atual de cada mensagem
+     * @param alteracoes Alterações com mensagem e usuário carregados
+     * @return DTOs na mesma ordem, textos descriptografados em lote
+     */
+    public static List<ChatAlteracaoResponse> converterAlteracoes(List<ChatMensagemAlteracao> alteracoes) {
+        List<ChatMensagemResponse> mensagens = converterLote(alteracoes.stream()
+                .map(ChatMensagemAlteracao::getMensagem)
+                .collect(Collectors.toList()));
+
+        List<ChatAlteracaoResponse> resultado = new ArrayList<>(alteracoes.size());
+        for (int i = 0; i < alteracoes.size(); i++) {
+            resultado.add(converterAlteracao(alteracoes.get(i), mensagens.get(i)));
+        }
+        return resultado;
+    }
+
+    /**
+     * Monta o DTO de uma alteração a partir da mensagem já convertida
+     * @param alteracao Alteração registrada
+     * @param mensagem Estado atual da mensagem, descriptografado
+     * @return DTO da alteração
+     */
+    public static ChatAlteracaoResponse converterAlteracao(ChatMensagemAlteracao alteracao, ChatMensagemResponse mensagem) {
+        ChatAlteracaoResponse dto = new ChatAlteracaoResponse();
+        dto.setId(alteracao.getId());
+        dto.setSalaId(mensagem.getSalaId());
+        dto.setTipo(alteracao.getTipo());
+        dto.setMensagem(mensagem);
+        dto.setCriadoEm(alteracao.getCriadoEm());
+        return dto;
+    }
+
+    /**
+     * Converte as linhas de ChatParticipanteRepository.listarSalasDetalhadasDoUsuario, descriptografando
+     * as últimas mensagens em lote
+     * Colunas: sala_id, estabelecimento_id, estabelecimento_nome, acesso_expira_em, texto criptografado da
+     * última mensagem, nome do autor, criado_em da última mensagem, participantes ativos
+     * (colunas da última mensagem nulas em salas sem mensagens)
+     * @param linhas Linhas da consulta
+     * @param usuarioId ID do usuário (contador de não lidas em memória)
+     * @return Salas detalhadas, na mesma ordem
+     */
+    public static List<ChatSalaDetalhadaResponse> converterSalasDetalhadas(List<Object[]> linhas, Integer usuarioId) {
+        List<String> textos = AesCryptoUtil.descriptografarLote(linhas.stream()
+                .map(linha -> (String) linha[4])
+                .collect(Collectors.toList()));
+
+        List<ChatSalaDetalhadaResponse> resultado = new ArrayList<>(linhas.size());
+        for (int i = 0; i < linhas.size(); i++) {
+            Object[] linha = linhas.get(i);
+            ChatSalaDetalhadaResponse dto = new ChatSalaDetalhadaResponse();
+            dto.setSalaId(((Number) linha[0]).intValue());
+            dto.setEstabelecimentoId(((Number) linha[1]).intValue());
+            dto.setEstabelecimentoNome((String) linha[2]);
+            dto.setAcessoExpiraEm((Date) linha[3]);
+
+            if (linha[4] != null) {
+                ChatSalaDetalhadaResponse.UltimaMensagemDTO ultima = new ChatSalaDetalhadaResponse.UltimaMensagemDTO();
+                ultima.setTexto(textos.get(i) != null ? textos.get(i) : ERRO_DESCRIPTOGRAFAR_ULTIMA);
+                ultima.setUsuarioNome(linha[5] != null ? (String) linha[5] : "Desconhecido");
+                ultima.setCriadoEm((Date) linha[6]);
+                dto.setUltimaMensagem(ultima);
+            }
+
+            dto.setTotalParticipantesAtivos(((Number) linha[7]).intValue());
+
+            // Contador em memória (sem consulta extra por sala)
+            dto.setMensagensNaoLidas(ChatMensagensNaoLidas.obter(dto.getSalaId(), usuarioId));
+            resultado.add(dto);
+        }
+        return resultado;
+    }
+
+    private static ChatMensagemResponse converterSemTexto(ChatMensagem mensagem) {
+        ChatMensagemResponse dto = new ChatMensagemResponse();
+        dto.setId(mensagem.getId());
+        dto.setSalaId(mensagem.getSala() != null ? mensagem.getSala().getId() : null);
+        dto.setUsuarioId(mensagem.getUsuario() != null ? mensagem.getUsuario().getId() : null);
+        dto.setUsuarioNome(mensagem.getUsuario() != null ? mensagem.getUsuario().getNome() : null);
+        dto.setUsuarioEmail(mensagem.getUsuario() != null ? mensagem.getUsuario().getEmail() : null);
+
+        dto.setCriadoEm(mensagem.getCriadoEm());
+        dto.setEditadoEm(mensagem.getEditadoEm());
+        dto.setRemovidoEm(mensagem.getRemovidoEm());
+        return dto;
+    }
+}
@@ -0,0 +1,143 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Contadores em memória de mensagens não lidas por participante
+ * Cada nova mensagem incrementa o contador de todos os participantes da sala (exceto o autor)
+ * e a marcação de leitura zera o contador. O banco (cursor ultima_mensagem_lida_id) só é
+ * consultado na carga inicial, feita na subida da aplicação.
+ * Cada contador guarda a expiração do acesso do participante: contadores expirados são removidos
+ * ao incrementar e pela varredura periódica (ChatPresencaVarredura), junto com as salas vazias.
+ * O registro e a marcação de leitura são locais da instância, como a própria marcação de leitura:
+ * um participante registrado em outra instância só ganha contador aqui na próxima carga inicial.
+ */
+public class ChatMensagensNaoLidas {
+
+    // Mapa de salaId -> (usuarioId -> contador)
+    private static final Map<Integer, Map<Integer, Contador>> salas = new ConcurrentHashMap<>();
+
+    private static final class Contador {
+        private final AtomicInteger total = new AtomicInteger();
+        private volatile long acessoExpiraEm;
+
+        private Contador(long acessoExpiraEm) {
+            this.acessoExpiraEm = acessoExpiraEm;
+        }
+
+        private boolean expirado(long agora) {
+            return agora >= acessoExpiraEm;
+        }
+    }
+
+    /**
+     * Define o contador de um participante (carga inicial ou acesso renovado)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param total Mensagens não lidas
+     * @param acessoExpiraEm Instante (epoch ms) em que o acesso do participante expira
+     */
+    public static void definir(Integer salaId, Integer usuarioId, int total, long acessoExpiraEm) {
+        Contador contador = salas.computeIfAbsent(salaId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(usuarioId, k -> new Contador(acessoExpiraEm));
+        contador.acessoExpiraEm = acessoExpiraEm;
+        contador.total.set(total);
+    }
+
+    /**
+     * Registra um participante da sala (sem mensagens não lidas, caso ainda não exista)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param acessoExpiraEm Instante (epoch ms) em que o acesso do participante expira
+     */
+    public static void registrarParticipante(Integer salaId, Integer usuarioId, long acessoExpiraEm) {
+        salas.computeIfAbsent(salaId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(usuarioId, k -> new Contador(acessoExpiraEm))
+                .acessoExpiraEm = acessoExpiraEm;
+    }
+
+    /**
+     * Atualiza o contador de um participante já registrado nesta instância (ex.: leitura parcial)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param total Mensagens não lidas
+     */
+    public static void atualizar(Integer salaId, Integer usuarioId, int total) {
+        Map<Integer, Contador> participantes = salas.get(salaId);
+        if (participantes == null) {
+            return;
+        }
+        Contador contador = participantes.get(usuarioId);
+        if (contador != null) {
+            contador.total.set(total);
+        }
+    }
+
+    /**
+     * Incrementa o contador de todos os participantes da sala, exceto o autor da mensagem
+     * Participantes com acesso expirado são removidos em vez de incrementados.
+     * @param mensagem Nova mensagem
+     */
+    public static void incrementar(ChatMensagemResponse mensagem) {
+        Map<Integer, Contador> participantes = salas.get(mensagem.getSalaId());
+        if (participantes == null) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+        participantes.forEach((usuarioId, contador) -> {
+            if (contador.expirado(agora)) {
+                participantes.remove(usuarioId, contador);
+            } else if (!usuarioId.equals(mensagem.getUsuarioId())) {
+                contador.total.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Zera o contador de um participante (todas as mensagens lidas)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     */
+    public static void zerar(Integer salaId, Integer usuarioId) {
+        atualizar(salaId, usuarioId, 0);
+    }
+
+    /**
+     * Retorna o número de mensagens não lidas de um participante
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @return Mensagens não lidas (0 se o participante não estiver registrado)
+     */
+    public static int obter(Integer salaId, Integer usuarioId) {
+        Map<Integer, Contador> participantes = salas.get(salaId);
+        if (participantes == null) {
+            return 0;
+        }
+        Contador contador = participantes.get(usuarioId);
+        return contador != null ? contador.total.get() : 0;
+    }
+
+    /**
+     * Remove os contadores de participantes com acesso expirado e as salas sem participantes
+     */
+    public static void expirar() {
+        long agora = System.currentTimeMillis();
+        for (Integer salaId : salas.keySet()) {
+            salas.computeIfPresent(salaId, (id, participantes) -> {
+                participantes.values().removeIf(contador -> contador.expirado(agora));
+                return participantes.isEmpty() ? null : participantes;
+            });
+        }
+    }
+
+    /**
+     * Limpa todos os contadores (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        salas.clear();
+    }
+}
@@ -0,0 +1,256 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Cache em memória das mensagens mais recentes de cada sala, já descriptografadas
+ * Cada sala tem um buffer circular (ring buffer) com as últimas N mensagens em ordem de ID.
+ * O buffer sabe a partir de qual ID está completo, então consultas "after" e o carregamento
+ * inicial que caem dentro da janela são respondidos sem ir ao banco nem descriptografar.
+ * Salas inativas são descartadas por tempo ocioso e, acima do limite de salas, por LRU.
+ */
+public class ChatMensagensRecentesCache {
+
+    // Mensagens mantidas por sala (>= limite máximo de página do endpoint de mensagens)
+    public static final int CAPACIDADE_POR_SALA = 100;
+
+    // Número máximo de salas em memória
+    private static final int MAXIMO_SALAS = 500;
+
+    // Salas sem acesso por este tempo são descartadas na próxima limpeza
+    private static final long INATIVIDADE_MS = 30 * 60 * 1000L;
+
+    // Mapa de salaId -> Buffer de mensagens recentes
+    private static final Map<Integer, Buffer> salas = new ConcurrentHashMap<>();
+
+    /**
+     * Buffer circular ordenado por ID
+     * Invariante: todas as mensagens da sala com id > completoApos estão no buffer.
+     */
+    private static final class Buffer {
+        private final ChatMensagemResponse[] itens = new ChatMensagemResponse[CAPACIDADE_POR_SALA];
+        private int inicio;
+        private int tamanho;
+        private int completoApos;
+        private boolean aquecendo;
+        private boolean pronto;
+        private volatile long ultimoAcesso = System.currentTimeMillis();
+
+        private ChatMensagemResponse get(int indice) {
+            return itens[(inicio + indice) % itens.length];
+        }
+
+        private void set(int indice, ChatMensagemResponse mensagem) {
+            itens[(inicio + indice) % itens.length] = mensagem;
+        }
+
+        private synchronized boolean iniciarAquecimento() {
+            if (aquecendo || pronto) {
+                return false;
+            }
+            aquecendo = true;
+            return true;
+        }
+
+        private synchronized void concluirAquecimento(List<ChatMensagemResponse> ultimas, boolean historicoCompleto) {
+            for (ChatMensagemResponse mensagem : ultimas) {
+                adicionar(mensagem);
+            }
+            if (!historicoCompleto && !ultimas.isEmpty()) {
+                // Mensagens anteriores à mais antiga carregada não estão no buffer
+                int maisAntiga = ultimas.stream().map(ChatMensagemResponse::getId).min(Comparator.naturalOrder()).get();
+                completoApos = Math.max(completoApos, maisAntiga - 1);
+            }
+            aquecendo = false;
+            pronto = true;
+        }
+
+        private synchronized void adicionar(ChatMensagemResponse mensagem) {
+            int id = mensagem.getId();
+            if (pronto && id <= completoApos) {
+                return;
+            }
+
+            // Procura a posição ordenada a partir do fim (caso comum: mensagem mais nova de todas)
+            int posicao = tamanho;
+            while (posicao > 0 && get(posicao - 1).getId() >= id) {
+                if (get(posicao - 1).getId() == id) {
+                    set(posicao - 1, mensagem);
+                    return;
+                }
+                posicao--;
+            }
+
+            if (tamanho == itens.length) {
+                if (posicao == 0) {
+                    // Mais antiga que todas com o buffer cheio: fica fora da janela
+                    completoApos = Math.max(completoApos, id);
+                    return;
+                }
+                // Descarta a mais antiga
+                completoApos = Math.max(completoApos, get(0).getId());
+                itens[inicio] = null;
+                inicio = (inicio + 1) % itens.length;
+                tamanho--;
+                posicao--;
+            }
+
+            for (int i = tamanho; i > posicao; i--) {
+                set(i, get(i - 1));
+            }
+            set(posicao, mensagem);
+            tamanho++;
+        }
+
+        private synchronized List<ChatMensagemResponse> listarPosteriores(int afterId) {
+            if (!pronto || afterId < completoApos) {
+                return null;
+            }
+            List<ChatMensagemResponse> resultado = new ArrayList<>();
+            for (int i = 0; i < tamanho; i++) {
+                if (get(i).getId() > afterId) {
+                    resultado.add(get(i));
+                }
+            }
+            return resultado;
+        }
+
+        private synchronized Integer buscarIdAnterior(int id) {
+            if (!pronto || id <= completoApos) {
+                return null;
+            }
+            // Todas as mensagens entre o anterior e id estariam no buffer
+            for (int i = tamanho - 1; i >= 0; i--) {
+                if (get(i).getId() < id) {
+                    return Math.max(get(i).getId(), completoApos);
+                }
+            }
+            return completoApos;
+        }
+
+        private synchronized List<ChatMensagemResponse> listarUltimas(int limite) {
+            if (!pronto || (tamanho < limite && completoApos > 0)) {
+                return null;
+            }
+            List<ChatMensagemResponse> resultado = new ArrayList<>();
+            for (int i = Math.max(0, tamanho - limite); i < tamanho; i++) {
+                resultado.add(get(i));
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Lista as mensagens posteriores a um ID, se estiverem dentro da janela em memória
+     * Se a sala ainda não estiver em memória, carrega as últimas mensagens com o carregador.
+     * @param salaId ID da sala
+     * @param afterId ID de referência
+     * @param carregador Busca as últimas CAPACIDADE_POR_SALA mensagens da sala no banco (ordem cronológica)
+     * @return Mensagens com id > afterId, ou vazio se a consulta precisar ir ao banco
+     */
+    public static Optional<List<ChatMensagemResponse>> listarPosteriores(Integer salaId, Integer afterId,
+                                                                          Supplier<List<ChatMensagemResponse>> carregador) {
+        Buffer buffer = obterOuAquecer(salaId, carregador);
+        return buffer != null ? Optional.ofNullable(buffer.listarPosteriores(afterId)) : Optional.empty();
+    }
+
+    /**
+     * Lista as últimas mensagens de uma sala, se estiverem dentro da janela em memória
+     * @param salaId ID da sala
+     * @param limite Número de mensagens (até CAPACIDADE_POR_SALA)
+     * @param carregador Busca as últimas CAPACIDADE_POR_SALA mensagens da sala no banco (ordem cronológica)
+     * @return Mensagens em ordem cronológica, ou vazio se a consulta precisar ir ao banco
+     */
+    public static Optional<List<ChatMensagemResponse>> listarUltimas(Integer salaId, int limite,
+                                                                      Supplier<List<ChatMensagemResponse>> carregador) {
+        if (limite > CAPACIDADE_POR_SALA) {
+            return Optional.empty();
+        }
+        Buffer buffer = obterOuAquecer(salaId, carregador);
+        return buffer != null ? Optional.ofNullable(buffer.listarUltimas(limite)) : Optional.empty();
+    }
+
+    /**
+     * Retorna o ID da mensagem imediatamente anterior na sala, se a janela em memória permitir saber
+     * Quem já recebeu até esse ID só não tem a mensagem informada.
+     * @param salaId ID da sala
+     * @param id ID da mensagem
+     * @return ID anterior, ou null se a sala não estiver em memória ou o ID estiver fora da janela
+     */
+    public static Integer buscarIdAnterior(Integer salaId, Integer id) {
+        Buffer buffer = salas.get(salaId);
+        return buffer != null ? buffer.buscarIdAnterior(id) : null;
+    }
+
+    /**
+     * Registra uma nova mensagem no buffer da sala (se a sala estiver em memória)
+     * @param mensagem Mensagem já persistida e descriptografada
+     */
+    public static void adicionar(ChatMensagemResponse mensagem) {
+        Buffer buffer = salas.get(mensagem.getSalaId());
+        if (buffer != null) {
+            buffer.adicionar(mensagem);
+        }
+    }
+
+    /**
+     * Descarta o buffer de uma sala (próxima consulta recarrega do banco)
+     * @param salaId ID da sala
+     */
+    public static void invalidar(Integer salaId) {
+        salas.remove(salaId);
+    }
+
+    /**
+     * Limpa todo o cache (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        salas.clear();
+    }
+
+    private static Buffer obterOuAquecer(Integer salaId, Supplier<List<ChatMensagemResponse>> carregador) {
+        Buffer buffer = salas.get(salaId);
+        if (buffer == null) {
+            limparSeNecessario();
+            buffer = salas.computeIfAbsent(salaId, k -> new Buffer());
+        }
+        buffer.ultimoAcesso = System.currentTimeMillis();
+
+        // O buffer é criado antes da consulta ao banco, para receber as mensagens enviadas durante o carregamento
+        if (buffer.iniciarAquecimento()) {
+            try {
+                List<ChatMensagemResponse> ultimas = carregador.get();
+                buffer.concluirAquecimento(ultimas, ultimas.size() < CAPACIDADE_POR_SALA);
+            } catch (RuntimeException e) {
+                salas.remove(salaId, buffer);
+                throw e;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Descarta salas ociosas e, se ainda acima do limite, as menos acessadas recentemente
+     */
+    private static void limparSeNecessario() {
+        if (salas.size() < MAXIMO_SALAS) {
+            return;
+        }
+        long limite = System.currentTimeMillis() - INATIVIDADE_MS;
+        salas.entrySet().removeIf(e -> e.getValue().ultimoAcesso < limite);
+
+        while (salas.size() >= MAXIMO_SALAS) {
+            salas.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().ultimoAcesso))
+                    .ifPresent(e -> salas.remove(e.getKey(), e.getValue()));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package utils;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import model.dto.ChatPresencaResponse;
+
+/**
+ * Ponto único de distribuição de novas mensagens do chat para todos os transportes
+ * (Long Polling, Server-Sent Events e WebSocket)
+ * Cada etapa é isolada: a falha de uma (ex.: executor saturado) é registrada e não impede as demais,
+ * nem chega a quem enviou a mensagem, que já está gravada.
+ */
+public class ChatNotificador {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatNotificador.class.getName());
+
+    /**
+     * Distribui uma nova mensagem para todos os clientes conectados na sala
+     * @param mensagem Mensagem já persistida e descriptografada
+     */
+    public static void notificarNovaMensagem(ChatMensagemResponse mensagem) {
+        Integer salaId = mensagem.getSalaId();
+
+        // Registra no cache de mensagens recentes antes de acordar os clientes
+        executar("cache de recentes", salaId, () -> ChatMensagensRecentesCache.adicionar(mensagem));
+
+        // Indexa para a busca (se a sala já estiver indexada)
+        executar("índice de busca", salaId, () -> ChatBuscaIndice.adicionar(mensagem));
+
+        // Atualiza os contadores de mensagens não lidas dos demais participantes
+        executar("mensagens não lidas", salaId, () -> ChatMensagensNaoLidas.incrementar(mensagem));
+
+        // Libera requisições aguardando (Long Polling), com a mensagem já serializada para quem só precisa dela
+        executar("Long Polling", salaId, () -> ChatLongPollingManager.notificarNovaMensagem(mensagem,
+                ChatMensagensRecentesCache.buscarIdAnterior(salaId, mensagem.getId())));
+
+        // Envia para as conexões SSE abertas na sala
+        executar("SSE", salaId, () -> ChatSseManager.notificarNovaMensagem(salaId, mensagem));
+
+        // Envia para as sessões WebSocket abertas na sala
+        executar("WebSocket", salaId, () -> ChatSalaHub.notificarNovaMensagem(salaId, mensagem));
+
+        // O autor deixa de aparecer como digitando
+        executar("presença", salaId, () -> ChatPresenca.mensagemEnviada(salaId, mensagem.getUsuarioId()));
+    }
+
+    /**
+     * Distribui uma edição ou remoção de mensagem para todos os clientes conectados na sala
+     * @param alteracao Alteração já persistida, com o estado atual da mensagem descriptografado
+     */
+    public static void notificarAlteracao(ChatAlteracaoResponse alteracao) {
+        Integer salaId = alteracao.getSalaId();
+        ChatMensagemResponse mensagem = alteracao.getMensagem();
+
+        // Avança o cursor de alterações da sala antes de acordar os clientes
+        executar("cursor de alterações", salaId, () -> ChatAlteracoes.registrar(salaId, alteracao.getId()));
+
+        // Substitui a mensagem no cache de recentes (se estiver na janela em memória)
+        executar("cache de recentes", salaId, () -> ChatMensagensRecentesCache.adicionar(mensagem));
+
+        // Reindexa para a busca: o texto antigo sai e o novo entra (mensagens removidas não têm texto)
+        executar("índice de busca", salaId, () -> {
+            ChatBuscaIndice.remover(salaId, mensagem.getId());
+            ChatBuscaIndice.adicionar(mensagem);
+        });
+
+        // Libera requisições aguardando (Long Polling), que buscam as alterações pelo cursor
+        executar("Long Polling", salaId, () -> ChatLongPollingManager.notificarAlteracao(salaId));
+
+        // Envia para as conexões SSE e sessões WebSocket abertas na sala
+        executar("SSE", salaId, () -> ChatSseManager.notificarAlteracao(salaId, alteracao));
+        executar("WebSocket", salaId, () -> ChatSalaHub.notificarAlteracao(salaId, alteracao));
+    }
+
+    /**
+     * Distribui uma mudança de presença (online/digitando) para os clientes conectados na sala
+     * Long Polling não recebe o evento: esses clientes consultam GET /chat/salas/{salaId}/presenca
+     * @param presenca Estado atual do usuário na sala
+     */
+    public static void notificarPresenca(ChatPresencaResponse presenca) {
+        Integer salaId = presenca.getSalaId();
+        executar("SSE", salaId, () -> ChatSseManager.notificarPresenca(salaId, presenca));
+        executar("WebSocket", salaId, () -> ChatSalaHub.notificarPresenca(salaId, presenca));
+    }
+
+    private static void executar(String etapa, Integer salaId, Runnable acao) {
+        try {
+            acao.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Falha na distribuição do chat (" + etapa + ") na sala " + salaId, e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package utils;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Janelas de criado_em para as consultas de mensagens do chat, derivadas das partições mensais
+ * Guarda o menor ID de cada partição: como os IDs crescem com o tempo, um ID de referência indica
+ * o mês a partir do qual (ou até o qual) as mensagens procuradas podem estar, e o PostgreSQL descarta
+ * as demais partições. Um mês de folga cobre IDs reservados em bloco e gravados depois (gravação em lote).
+ * Sem informação (ex.: antes da primeira atualização), as janelas não restringem nada.
+ */
+public class ChatParticoes {
+
+    private static final Date SEM_LIMITE_INFERIOR = new Date(0);
+    private static final Date SEM_LIMITE_SUPERIOR = Date.from(YearMonth.of(9999, 1).atDay(1)
+            .atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+    // Mapa de menor ID da partição -> mês da partição
+    private static volatile NavigableMap<Integer, YearMonth> meses = new TreeMap<>();
+
+    /**
+     * Substitui o mapa de partições
+     * @param menoresIds Mapa de menor ID -> mês de cada partição com mensagens
+     */
+    public static void atualizar(Map<Integer, YearMonth> menoresIds) {
+        meses = new TreeMap<>(menoresIds);
+    }
+
+    /**
+     * Limite inferior de criado_em para mensagens com ID maior que o informado
+     * @param mensagemId ID de referência (after)
+     * @return Início do mês anterior ao da partição da mensagem de referência
+     */
+    public static Date criadoDesde(Integer mensagemId) {
+        Map.Entry<Integer, YearMonth> particao = mensagemId != null ? meses.floorEntry(mensagemId) : null;
+        if (particao == null) {
+            return SEM_LIMITE_INFERIOR;
+        }
+        return inicio(particao.getValue().minusMonths(1));
+    }
+
+    /**
+     * Limite superior (exclusivo) de criado_em para mensagens com ID menor que o informado
+     * @param mensagemId ID de referência (before)
+     * @return Início do segundo mês após o da partição da mensagem de referência
+     */
+    public static Date criadoAte(Integer mensagemId) {
+        Map.Entry<Integer, YearMonth> particao = mensagemId != null ? meses.floorEntry(mensagemId) : null;
+        if (particao == null) {
+            return SEM_LIMITE_SUPERIOR;
+        }
+        return inicio(particao.getValue().plusMonths(2));
+    }
+
+    private static Date inicio(YearMonth mes) {
+        return Date.from(mes.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
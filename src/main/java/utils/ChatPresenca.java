@@ -0,0 +1,225 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import model.dto.ChatPresencaResponse;
+
+/**
+ * Presença e indicador de digitação dos usuários nas salas do chat, mantidos apenas em memória
+ * Um usuário está online enquanto tiver uma conexão aberta na sala (SSE ou WebSocket) ou tiver dado
+ * sinal recentemente (heartbeat, requisição de Long Polling ou aviso de digitação).
+ * Cada mudança de estado é distribuída na sala como um evento "presenca" com o estado completo do usuário.
+ * O banco continua sendo a referência apenas para quem tem acesso à sala.
+ */
+public class ChatPresenca {
+
+    // Tempo sem sinal até o usuário ser considerado offline (maior que o timeout do Long Polling)
+    public static final long TTL_SINAL_MS = 45000;
+
+    // Tempo que o indicador de digitação permanece sem novo aviso
+    public static final long TTL_DIGITANDO_MS = 5000;
+
+    // Mapa de salaId -> Presenças da sala
+    private static final Map<Integer, Sala> salas = new ConcurrentHashMap<>();
+
+    /**
+     * Presenças de uma sala, protegidas pelo lock do próprio objeto
+     */
+    private static final class Sala {
+        private final Map<Integer, Presenca> usuarios = new HashMap<>();
+    }
+
+    private static final class Presenca {
+        private final Integer usuarioId;
+        private final String nome;
+        private final List<BooleanSupplier> conexoes = new ArrayList<>();
+        private long ultimoSinal;
+        private long digitandoAte;
+
+        // Último estado distribuído na sala
+        private boolean online;
+        private boolean digitando;
+
+        private Presenca(Integer usuarioId, String nome) {
+            this.usuarioId = usuarioId;
+            this.nome = nome;
+        }
+    }
+
+    /**
+     * Registra uma conexão aberta do usuário na sala (SSE ou WebSocket)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param nome Nome do usuário
+     * @param aberta Indica se a conexão continua aberta (consultado na varredura)
+     */
+    public static void conectar(Integer salaId, Integer usuarioId, String nome, BooleanSupplier aberta) {
+        atualizar(salaId, usuarioId, nome, p -> p.conexoes.add(aberta));
+    }
+
+    /**
+     * Remove uma conexão do usuário na sala (ex.: sessão WebSocket encerrada)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param aberta Mesmo objeto informado em conectar
+     */
+    public static void desconectar(Integer salaId, Integer usuarioId, BooleanSupplier aberta) {
+        atualizar(salaId, usuarioId, null, p -> p.conexoes.remove(aberta));
+    }
+
+    /**
+     * Registra um sinal de vida do usuário na sala (heartbeat ou requisição de Long Polling)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param nome Nome do usuário
+     */
+    public static void sinal(Integer salaId, Integer usuarioId, String nome) {
+        long agora = System.currentTimeMillis();
+        atualizar(salaId, usuarioId, nome, p -> p.ultimoSinal = agora);
+    }
+
+    /**
+     * Registra que o usuário está digitando (o indicador expira sem novos avisos)
+     * @param salaId ID da sala
+     * @param usuarioId ID do usuário
+     * @param nome Nome do usuário
+     */
+    public static void digitando(Integer salaId, Integer usuarioId, String nome) {
+        long agora = System.currentTimeMillis();
+        atualizar(salaId, usuarioId, nome, p -> {
+            p.ultimoSinal = agora;
+            p.digitandoAte = agora + TTL_DIGITANDO_MS;
+        });
+    }
+
+    /**
+     * Encerra o indicador de digitação quando o usuário envia a mensagem
+     * @param salaId ID da sala
+     * @param usuarioId ID do autor
+     */
+    public static void mensagemEnviada(Integer salaId, Integer usuarioId) {
+        if (salas.containsKey(salaId)) {
+            atualizar(salaId, usuarioId, null, p -> p.digitandoAte = 0);
+        }
+    }
+
+    /**
+     * Expira sinais, indicadores de digitação e conexões fechadas em todas as salas,
+     * distribuindo as mudanças de estado (executado periodicamente)
+     */
+    public static void expirar() {
+        long agora = System.currentTimeMillis();
+        for (Map.Entry<Integer, Sala> entrada : salas.entrySet()) {
+            Integer salaId = entrada.getKey();
+            Sala sala = entrada.getValue();
+            List<ChatPresencaResponse> mudancas = new ArrayList<>();
+            synchronized (sala) {
+                Iterator<Presenca> it = sala.usuarios.values().iterator();
+                while (it.hasNext()) {
+                    Presenca presenca = it.next();
+                    presenca.conexoes.removeIf(aberta -> !aberta.getAsBoolean());
+                    ChatPresencaResponse mudanca = reavaliar(salaId, presenca, agora);
+                    if (mudanca != null) {
+                        mudancas.add(mudanca);
+                    }
+                    if (!presenca.online) {
+                        it.remove();
+                    }
+                }
+                if (sala.usuarios.isEmpty()) {
+                    salas.remove(salaId, sala);
+                }
+            }
+            mudancas.forEach(ChatNotificador::notificarPresenca);
+        }
+    }
+
+    /**
+     * Lista os usuários online em uma sala
+     * @param salaId ID da sala
+     * @return Estado atual de cada usuário online
+     */
+    public static List<ChatPresencaResponse> listarOnline(Integer salaId) {
+        List<ChatPresencaResponse> online = new ArrayList<>();
+        Sala sala = salas.get(salaId);
+        if (sala == null) {
+            return online;
+        }
+        synchronized (sala) {
+            for (Presenca presenca : sala.usuarios.values()) {
+                if (presenca.online) {
+                    online.add(new ChatPresencaResponse(salaId, presenca.usuarioId, presenca.nome, true, presenca.digitando));
+                }
+            }
+        }
+        return online;
+    }
+
+    /**
+     * Retorna o número de usuários online em uma sala (para debug/monitoramento)
+     * @param salaId ID da sala
+     * @return Número de usuários online
+     */
+    public static int contarOnline(Integer salaId) {
+        return listarOnline(salaId).size();
+    }
+
+    /**
+     * Limpa todas as presenças (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        salas.clear();
+    }
+
+    private static void atualizar(Integer salaId, Integer usuarioId, String nome, Consumer<Presenca> alteracao) {
+        ChatPresencaResponse mudanca;
+        while (true) {
+            Sala sala = salas.computeIfAbsent(salaId, k -> new Sala());
+            synchronized (sala) {
+                // A varredura pode ter descartado a sala entre a busca e o lock
+                if (salas.get(salaId) != sala) {
+                    continue;
+                }
+                Presenca presenca = sala.usuarios.get(usuarioId);
+                if (presenca == null) {
+                    if (nome == null) {
+                        return;
+                    }
+                    presenca = new Presenca(usuarioId, nome);
+                    sala.usuarios.put(usuarioId, presenca);
+                }
+                alteracao.accept(presenca);
+                mudanca = reavaliar(salaId, presenca, System.currentTimeMillis());
+                if (!presenca.online) {
+                    sala.usuarios.remove(usuarioId);
+                }
+            }
+            break;
+        }
+        if (mudanca != null) {
+            ChatNotificador.notificarPresenca(mudanca);
+        }
+    }
+
+    /**
+     * Recalcula o estado do usuário (sob o lock da sala)
+     * @return Novo estado, ou null se nada mudou
+     */
+    private static ChatPresencaResponse reavaliar(Integer salaId, Presenca presenca, long agora) {
+        boolean online = !presenca.conexoes.isEmpty() || agora - presenca.ultimoSinal < TTL_SINAL_MS;
+        boolean digitando = online && agora < presenca.digitandoAte;
+        if (online == presenca.online && digitando == presenca.digitando) {
+            return null;
+        }
+        presenca.online = online;
+        presenca.digitando = digitando;
+        return new ChatPresencaResponse(salaId, presenca.usuarioId, presenca.nome, online, digitando);
+    }
+}
@@ -0,0 +1,67 @@
+package utils;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+
+/**
+ * Varredura periódica da presença no chat: expira heartbeats, indicadores de digitação
+ * e conexões fechadas, distribuindo as mudanças (ex.: usuário ficou offline)
+ * Com menos frequência, remove os contadores de não lidas de participantes com acesso expirado.
+ */
+@Singleton
+@Startup
+public class ChatPresencaVarredura {
+
+    private static final Logger LOGGER = Logger.getLogger(ChatPresencaVarredura.class.getName());
+
+    private static final long INTERVALO_MS = 2000;
+
+    private static final long INTERVALO_NAO_LIDAS_MS = 300_000;
+
+    @Resource
+    private ManagedScheduledExecutorService agendador;
+
+    private ScheduledFuture<?> tarefa;
+
+    private ScheduledFuture<?> tarefaNaoLidas;
+
+    @PostConstruct
+    public void init() {
+        tarefa = agendador.scheduleWithFixedDelay(() -> {
+            try {
+                ChatPresenca.expirar();
+            } catch (Exception e) {
+                // Uma falha não deve interromper as próximas execuções
+                LOGGER.log(Level.WARNING, "Falha na varredura de presença do chat", e);
+            }
+        }, INTERVALO_MS, INTERVALO_MS, TimeUnit.MILLISECONDS);
+
+        tarefaNaoLidas = agendador.scheduleWithFixedDelay(() -> {
+            try {
+                ChatMensagensNaoLidas.expirar();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Falha na varredura dos contadores de não lidas do chat", e);
+            }
+        }, INTERVALO_NAO_LIDAS_MS, INTERVALO_NAO_LIDAS_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void parar() {
+        if (tarefa != null) {
+            tarefa.cancel(false);
+        }
+        if (tarefaNaoLidas != null) {
+            tarefaNaoLidas.cancel(false);
+        }
+        ChatPresenca.limparTodos();
+    }
+}
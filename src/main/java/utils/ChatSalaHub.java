@@ -0,0 +1,232 @@
+package utils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatEventoResponse;
+import model.dto.ChatMensagemResponse;
+import model.dto.ChatPresencaResponse;
+
+/**
+ * Hub em memória das sessões WebSocket do chat, por sala
+ * Cada evento é serializado uma única vez e o mesmo frame é enfileirado para todas as sessões da sala.
+ * Cada sessão tem uma fila de envio limitada: um cliente lento que enche a fila é desconectado
+ * (e recupera o histórico ao reconectar), sem atrasar os demais.
+ */
+public class ChatSalaHub {
+
+    public static final String EVENTO_MENSAGEM = "mensagem";
+    public static final String EVENTO_PRESENCA = "presenca";
+    public static final String EVENTO_ALTERACAO = "alteracao";
+    public static final String EVENTO_ERRO = "erro";
+
+    // Máximo de frames pendentes por sessão antes de considerar o cliente lento
+    private static final int CAPACIDADE_FILA = 64;
+
+    // Propriedade da sessão com a sua Conexao (fila de envio)
+    private static final String PROP_CONEXAO = ChatSalaHub.class.getName() + ".conexao";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Mapa de salaId -> Sessões abertas na sala
+    private static final Map<Integer, Set<Conexao>> salas = new ConcurrentHashMap<>();
+
+    /**
+     * Sessão WebSocket com sua fila de envio
+     * Apenas um envio assíncrono fica em andamento por vez; os demais aguardam na fila.
+     */
+    private static final class Conexao {
+        private final Session session;
+        private final long acessoExpiraEm;
+        private final Queue<String> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+        private final AtomicBoolean enviando = new AtomicBoolean(false);
+
+        private Conexao(Session session, long acessoExpiraEm) {
+            this.session = session;
+            this.acessoExpiraEm = acessoExpiraEm;
+        }
+
+        private void enfileirar(String frame) {
+            if (System.currentTimeMillis() >= acessoExpiraEm) {
+                fechar(session, CloseReason.CloseCodes.VIOLATED_POLICY, "Acesso à sala expirado");
+                return;
+            }
+            if (!fila.offer(frame)) {
+                fechar(session, CloseReason.CloseCodes.TRY_AGAIN_LATER, "Cliente lento");
+                return;
+            }
+            drenar();
+        }
+
+        private void drenar() {
+            if (!enviando.compareAndSet(false, true)) {
+                return;
+            }
+            String frame = fila.poll();
+            if (frame == null) {
+                enviando.set(false);
+                // Um frame pode ter entrado entre o poll e a liberação
+                if (!fila.isEmpty()) {
+                    drenar();
+                }
+                return;
+            }
+            if (!session.isOpen()) {
+                fila.clear();
+                return;
+            }
+            session.getAsyncRemote().sendText(frame, resultado -> {
+                enviando.set(false);
+                if (resultado.isOK()) {
+                    drenar();
+                } else {
+                    fechar(session, CloseReason.CloseCodes.CLOSED_ABNORMALLY, "Falha ao enviar");
+                }
+            });
+        }
+    }
+
+    /**
+     * Registra uma sessão para receber os eventos de uma sala
+     * @param salaId ID da sala
+     * @param session Sessão WebSocket
+     * @param acessoExpiraEm Instante (epoch ms) em que o acesso do usuário à sala expira
+     */
+    public static void registrar(Integer salaId, Session session, long acessoExpiraEm) {
+        Conexao conexao = new Conexao(session, acessoExpiraEm);
+        session.getUserProperties().put(PROP_CONEXAO, conexao);
+        salas.computeIfAbsent(salaId, k -> ConcurrentHashMap.newKeySet()).add(conexao);
+    }
+
+    /**
+     * Remove uma sessão da sala
+     * @param salaId ID da sala
+     * @param session Sessão WebSocket
+     */
+    public static void remover(Integer salaId, Session session) {
+        salas.computeIfPresent(salaId, (id, conexoes) -> {
+            conexoes.removeIf(c -> c.session.equals(session));
+            return conexoes.isEmpty() ? null : conexoes;
+        });
+    }
+
+    /**
+     * Envia uma nova mensagem para todas as sessões abertas na sala
+     * @param salaId ID da sala
+     * @param mensagem Mensagem descriptografada
+     */
+    public static void notificarNovaMensagem(Integer salaId, ChatMensagemResponse mensagem) {
+        Set<Conexao> conexoes = salas.get(salaId);
+        if (conexoes == null || conexoes.isEmpty()) {
+            return;
+        }
+
+        // Serializa uma única vez para todas as sessões
+        String frame = serializar(new ChatEventoResponse(EVENTO_MENSAGEM, mensagem));
+        for (Conexao conexao : conexoes) {
+            conexao.enfileirar(frame);
+        }
+    }
+
+    /**
+     * Envia uma edição ou remoção de mensagem para todas as sessões abertas na sala
+     * @param salaId ID da sala
+     * @param alteracao Alteração com o estado atual da mensagem
+     */
+    public static void notificarAlteracao(Integer salaId, ChatAlteracaoResponse alteracao) {
+        Set<Conexao> conexoes = salas.get(salaId);
+        if (conexoes == null || conexoes.isEmpty()) {
+            return;
+        }
+
+        String frame = serializar(new ChatEventoResponse(EVENTO_ALTERACAO, alteracao));
+        for (Conexao conexao : conexoes) {
+            conexao.enfileirar(frame);
+        }
+    }
+
+    /**
+     * Envia uma mudança de presença para todas as sessões abertas na sala
+     * @param salaId ID da sala
+     * @param presenca Estado atual do usuário na sala
+     */
+    public static void notificarPresenca(Integer salaId, ChatPresencaResponse presenca) {
+        Set<Conexao> conexoes = salas.get(salaId);
+        if (conexoes == null || conexoes.isEmpty()) {
+            return;
+        }
+
+        String frame = serializar(new ChatEventoResponse(EVENTO_PRESENCA, presenca));
+        for (Conexao conexao : conexoes) {
+            conexao.enfileirar(frame);
+        }
+    }
+
+    /**
+     * Envia um evento apenas para uma sessão (ex.: erro de validação)
+     * Passa pela mesma fila de envio dos eventos da sala: nunca há dois envios assíncronos na mesma sessão.
+     * Sessões não registradas (ou já removidas) não recebem o evento.
+     * @param session Sessão WebSocket
+     * @param evento Evento a enviar
+     */
+    public static void enviar(Session session, ChatEventoResponse evento) {
+        Object conexao = session.getUserProperties().get(PROP_CONEXAO);
+        if (conexao instanceof Conexao) {
+            ((Conexao) conexao).enfileirar(serializar(evento));
+        }
+    }
+
+    /**
+     * Retorna o número de sessões abertas em uma sala (para debug/monitoramento)
+     * @param salaId ID da sala
+     * @return Número de sessões abertas
+     */
+    public static int contarConexoes(Integer salaId) {
+        Set<Conexao> conexoes = salas.get(salaId);
+        return conexoes != null ? conexoes.size() : 0;
+    }
+
+    /**
+     * Retorna o número total de sessões abertas em todas as salas (para monitoramento)
+     * @return Número de sessões abertas
+     */
+    public static int contarTotalConexoes() {
+        int total = 0;
+        for (Set<Conexao> conexoes : salas.values()) {
+            total += conexoes.size();
+        }
+        return total;
+    }
+
+    /**
+     * Encerra uma sessão sem propagar erros de I/O
+     */
+    public static void fechar(Session session, CloseReason.CloseCode codigo, String motivo) {
+        try {
+            if (session.isOpen()) {
+                session.close(new CloseReason(codigo, motivo));
+            }
+        } catch (IOException e) {
+            // Sessão já encerrada pelo cliente
+        }
+    }
+
+    private static String serializar(ChatEventoResponse evento) {
+        try {
+            return MAPPER.writeValueAsString(evento);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Erro ao serializar evento do chat", e);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+import model.dto.ChatAlteracaoResponse;
+import model.dto.ChatMensagemResponse;
+import model.dto.ChatPresencaResponse;
+
+/**
+ * Gerenciador de conexões Server-Sent Events do chat
+ * Mantém um SseBroadcaster por sala; cada nova mensagem é enviada como evento "mensagem"
+ * com o ID da mensagem como ID do evento (permitindo retomada via Last-Event-ID).
+ * Edições e remoções são enviadas como evento "alteracao", sem ID de evento: o cliente guarda o ID
+ * da alteração e o informa em alteracoesAfter ao reconectar.
+ */
+public class ChatSseManager {
+
+    public static final String EVENTO_MENSAGEM = "mensagem";
+    public static final String EVENTO_PRESENCA = "presenca";
+    public static final String EVENTO_ALTERACAO = "alteracao";
+
+    // Mapa de salaId -> Broadcaster e conexões abertas da sala
+    private static final Map<Integer, SalaSse> salas = new ConcurrentHashMap<>();
+
+    // Instância de Sse do container, usada para montar eventos fora de uma requisição
+    private static volatile Sse sse;
+
+    private static final class SalaSse {
+        private final SseBroadcaster broadcaster;
+        // Mapa de conexão -> encerramento agendado para a expiração do acesso
+        private final Map<SseEventSink, Future<?>> conexoes = new ConcurrentHashMap<>();
+
+        private SalaSse(SseBroadcaster broadcaster) {
+            this.broadcaster = broadcaster;
+            broadcaster.onClose(this::encerrada);
+            broadcaster.onError((sink, erro) -> encerrada(sink));
+        }
+
+        /**
+         * Conexão fechada: cancela o encerramento agendado (a remoção do mapa fica para removerFechadas)
+         */
+        private void encerrada(SseEventSink sink) {
+            Future<?> expiracao = conexoes.get(sink);
+            if (expiracao != null && sink.isClosed()) {
+                expiracao.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Registra uma conexão SSE para receber as mensagens de uma sala
+     * @param salaId ID da sala
+     * @param sseContexto Instância de Sse da requisição
+     * @param sink Conexão do cliente
+     * @param expiracao Encerramento agendado para a expiração do acesso, cancelado se a conexão fechar antes
+     */
+    public static void registrar(Integer salaId, Sse sseContexto, SseEventSink sink, Future<?> expiracao) {
+        sse = sseContexto;
+        salas.compute(salaId, (id, sala) -> {
+            if (sala == null) {
+                sala = new SalaSse(sseContexto.newBroadcaster());
+            }
+            sala.conexoes.put(sink, expiracao);
+            sala.broadcaster.register(sink);
+            return sala;
+        });
+        // Fechada antes do registro (ex.: cliente desconectou durante o reenvio do histórico)
+        if (sink.isClosed()) {
+            expiracao.cancel(false);
+        }
+    }
+
+    /**
+     * Monta o evento SSE de uma mensagem
+     * @param sseContexto Instância de Sse
+     * @param mensagem Mensagem descriptografada
+     * @return Evento pronto para envio
+     */
+    public static OutboundSseEvent criarEvento(Sse sseContexto, ChatMensagemResponse mensagem) {
+        return sseContexto.newEventBuilder()
+                .id(String.valueOf(mensagem.getId()))
+                .name(EVENTO_MENSAGEM)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ChatMensagemResponse.class, mensagem)
+                .build();
+    }
+
+    /**
+     * Envia uma nova mensagem para todas as conexões SSE abertas na sala
+     * @param salaId ID da sala
+     * @param mensagem Mensagem descriptografada
+     */
+    public static void notificarNovaMensagem(Integer salaId, ChatMensagemResponse mensagem) {
+        removerFechadas(salaId);
+
+        SalaSse sala = salas.get(salaId);
+        if (sala == null || sse == null) {
+            return;
+        }
+        sala.broadcaster.broadcast(criarEvento(sse, mensagem));
+    }
+
+    /**
+     * Monta o evento SSE de uma edição ou remoção de mensagem
+     * O evento não tem ID, para não alterar o Last-Event-ID usado na retomada das mensagens
+     * @param sseContexto Instância de Sse
+     * @param alteracao Alteração com o estado atual da mensagem
+     * @return Evento pronto para envio
+     */
+    public static OutboundSseEvent criarEventoAlteracao(Sse sseContexto, ChatAlteracaoResponse alteracao) {
+        return sseContexto.newEventBuilder()
+                .name(EVENTO_ALTERACAO)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ChatAlteracaoResponse.class, alteracao)
+                .build();
+    }
+
+    /**
+     * Envia uma edição ou remoção de mensagem para todas as conexões SSE abertas na sala
+     * @param salaId ID da sala
+     * @param alteracao Alteração com o estado atual da mensagem
+     */
+    public static void notificarAlteracao(Integer salaId, ChatAlteracaoResponse alteracao) {
+        SalaSse sala = salas.get(salaId);
+        if (sala == null || sse == null) {
+            return;
+        }
+        sala.broadcaster.broadcast(criarEventoAlteracao(sse, alteracao));
+    }
+
+    /**
+     * Envia uma mudança de presença para todas as conexões SSE abertas na sala
+     * O evento não tem ID, para não alterar o Last-Event-ID usado na retomada das mensagens
+     * @param salaId ID da sala
+     * @param presenca Estado atual do usuário na sala
+     */
+    public static void notificarPresenca(Integer salaId, ChatPresencaResponse presenca) {
+        SalaSse sala = salas.get(salaId);
+        if (sala == null || sse == null) {
+            return;
+        }
+        sala.broadcaster.broadcast(sse.newEventBuilder()
+                .name(EVENTO_PRESENCA)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ChatPresencaResponse.class, presenca)
+                .build());
+    }
+
+    /**
+     * Retorna o número de conexões SSE abertas em uma sala (para debug/monitoramento)
+     * @param salaId ID da sala
+     * @return Número de conexões abertas
+     */
+    public static int contarConexoes(Integer salaId) {
+        SalaSse sala = salas.get(salaId);
+        return sala != null ? sala.conexoes.size() : 0;
+    }
+
+    /**
+     * Retorna o número total de conexões SSE abertas em todas as salas (para monitoramento)
+     * @return Número de conexões abertas
+     */
+    public static int contarTotalConexoes() {
+        int total = 0;
+        for (SalaSse sala : salas.values()) {
+            total += sala.conexoes.size();
+        }
+        return total;
+    }
+
+    /**
+     * Remove conexões já fechadas pelos clientes e descarta o broadcaster de salas sem conexões
+     */
+    private static void removerFechadas(Integer salaId) {
+        salas.computeIfPresent(salaId, (id, sala) -> {
+            sala.conexoes.entrySet().removeIf(conexao -> {
+                if (conexao.getKey().isClosed()) {
+                    conexao.getValue().cancel(false);
+                    return true;
+                }
+                return false;
+            });
+            if (sala.conexoes.isEmpty()) {
+                sala.broadcaster.close();
+                return null;
+            }
+            return sala;
+        });
+    }
+
+    /**
+     * Fecha todas as conexões SSE (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        for (SalaSse sala : salas.values()) {
+            sala.conexoes.values().forEach(expiracao -> expiracao.cancel(false));
+            sala.broadcaster.close();
+        }
+        salas.clear();
+    }
+}
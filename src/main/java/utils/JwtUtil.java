@@ -2,10 +2,12 @@ package utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.JwtException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.*;
@@ -14,12 +16,50 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JwtUtil {
 
+  public static final String CLAIM_UID = "uid";
+  public static final String CLAIM_ROLES = "roles";
+  // Apenas os papéis de usuario_papel (atribuídos pelo servidor), usados nas verificações de papel
+  public static final String CLAIM_PAPEIS = "papeis";
+
   private static volatile PrivateKey PRIVATE;
   private static volatile PublicKey  PUBLIC;
 
+  // Parser montado uma única vez com a chave pública (thread-safe)
+  private static volatile JwtParser PARSER;
+
+  // Tokens já verificados: SHA-256 do token -> claims, válidos até o exp do próprio token.
+  // Evita repetir a verificação RS256 a cada requisição do mesmo cliente (ex.: Long Polling do chat)
+  private static final int MAXIMO_TOKENS_VERIFICADOS = 10_000;
+  private static final Map<String, TokenVerificado> VERIFICADOS = new ConcurrentHashMap<>();
+
+  // Com o cache cheio, a varredura das entradas expiradas (O(n)) roda no máximo uma vez por intervalo
+  private static final long INTERVALO_LIMPEZA_MS = 30_000;
+  private static final AtomicLong PROXIMA_LIMPEZA = new AtomicLong();
+
+  // MessageDigest não é thread-safe: uma instância por thread
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 indisponível", e);
+    }
+  });
+
+  private static final class TokenVerificado {
+    private final Claims claims;
+    private final long expiraEm;
+
+    private TokenVerificado(Claims claims, long expiraEm) {
+      this.claims = claims;
+      this.expiraEm = expiraEm;
+    }
+  }
+
   private static String cfg(String prop, String env, String def) {
     var p = System.getProperty(prop);
     if (p != null && !p.isBlank()) return p;
@@ -28,7 +68,7 @@ public class JwtUtil {
   }
 
   private static synchronized void ensureKeysLoaded() {
-    if (PRIVATE != null && PUBLIC != null) return;
+    if (PRIVATE != null && PUBLIC != null && PARSER != null) return;
     var privPath = cfg("jwt.privateKeyPath", "JWT_PRIVATE_KEY_PATH", null);
     var pubPath  = cfg("jwt.publicKeyPath",  "JWT_PUBLIC_KEY_PATH",  null);
     if (privPath == null || pubPath == null)
@@ -37,6 +77,7 @@ public class JwtUtil {
     try {
       PRIVATE = loadPrivateKeyPem(Path.of(privPath));
       PUBLIC  = loadPublicKeyPem(Path.of(pubPath));
+      PARSER  = Jwts.parser().verifyWith(PUBLIC).build();
     } catch (Exception e) {
       throw new IllegalStateException("Falha ao carregar chaves RSA: " + e.getMessage(), e);
     }
@@ -60,12 +101,22 @@ public class JwtUtil {
     return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(der));
   }
 
-  public static String generateToken(String subject, String roles, long minutes) {
+  /**
+   * Gera o access token do usuário
+   * @param usuarioId ID do usuário (claim "uid"), para que as requisições não precisem buscá-lo pelo e-mail
+   * @param subject E-mail do usuário
+   * @param roles Papéis separados por vírgula (claim "roles")
+   * @param papeis Códigos da tabela usuario_papel separados por vírgula (claim "papeis"); único claim
+   *               usado na autorização por papel (ex.: empresário), pois só o servidor os atribui
+   * @param minutes Validade em minutos
+   */
+  public static String generateToken(Integer usuarioId, String subject, String roles, String papeis, long minutes) {
     ensureKeysLoaded();
     Instant now = Instant.now();
     return Jwts.builder()
         .subject(subject)
-        .claims(Map.of("roles", roles == null ? "" : roles))
+        .claims(Map.of(CLAIM_UID, usuarioId, CLAIM_ROLES, roles == null ? "" : roles,
+            CLAIM_PAPEIS, papeis == null ? "" : papeis))
         .issuedAt(Date.from(now))
         .expiration(Date.from(now.plusSeconds(minutes * 60)))
         .signWith(PRIVATE, Jwts.SIG.RS256)   // API nova
@@ -73,11 +124,76 @@ public class JwtUtil {
   }
 
   public static Jws<Claims> parse(String jwt) throws JwtException {
-    ensureKeysLoaded();
+    if (PARSER == null) ensureKeysLoaded();
     // verifyWith + parseSignedClaims: API nova 0.12+
-    return Jwts.parser()
-        .verifyWith(PUBLIC)
-        .build()
-        .parseSignedClaims(jwt);
+    return PARSER.parseSignedClaims(jwt);
+  }
+
+  /**
+   * Verifica o token e retorna as claims, reaproveitando verificações anteriores do mesmo token
+   * A entrada do cache expira junto com o token (exp); tokens sem exp não são guardados.
+   * @param jwt Token recebido
+   * @return Claims do token verificado
+   * @throws JwtException Se o token for inválido ou estiver expirado
+   */
+  public static Claims verificar(String jwt) throws JwtException {
+    String chave = digest(jwt);
+    long agora = System.currentTimeMillis();
+
+    TokenVerificado verificado = VERIFICADOS.get(chave);
+    if (verificado != null) {
+      if (agora < verificado.expiraEm) return verificado.claims;
+      VERIFICADOS.remove(chave, verificado);
+    }
+
+    Claims claims = parse(jwt).getPayload();
+    Date exp = claims.getExpiration();
+    if (exp != null && exp.getTime() > agora) {
+      if (VERIFICADOS.size() >= MAXIMO_TOKENS_VERIFICADOS) {
+        limparExpirados(agora);
+      }
+      // Ainda cheio (muitos tokens válidos): segue sem cache em vez de descartar entradas em uso
+      if (VERIFICADOS.size() < MAXIMO_TOKENS_VERIFICADOS) {
+        VERIFICADOS.put(chave, new TokenVerificado(claims, exp.getTime()));
+      }
+    }
+    return claims;
+  }
+
+  /**
+   * ID do usuário contido no token
+   * @param claims Claims do token verificado
+   * @return ID do usuário, ou null em tokens emitidos antes da claim "uid"
+   */
+  public static Integer usuarioId(Claims claims) {
+    Number uid = claims.get(CLAIM_UID, Number.class);
+    return uid != null ? uid.intValue() : null;
+  }
+
+  /**
+   * Retorna o número de tokens verificados em cache (para monitoramento)
+   */
+  public static int contarTokensVerificados() {
+    return VERIFICADOS.size();
+  }
+
+  /**
+   * Limpa o cache de tokens verificados (útil para testes ou troca de chaves)
+   */
+  public static void limparTokensVerificados() {
+    VERIFICADOS.clear();
+  }
+
+  // Apenas uma thread varre, e só depois do intervalo; as demais seguem sem cache enquanto ele estiver cheio
+  private static void limparExpirados(long agora) {
+    long proxima = PROXIMA_LIMPEZA.get();
+    if (agora < proxima || !PROXIMA_LIMPEZA.compareAndSet(proxima, agora + INTERVALO_LIMPEZA_MS)) return;
+    VERIFICADOS.values().removeIf(t -> t.expiraEm <= agora);
+  }
+
+  // O cache guarda apenas o hash do token, nunca o token em si
+  private static String digest(String jwt) {
+    byte[] hash = SHA256.get().digest(jwt.getBytes(StandardCharsets.UTF_8));
+    return Base64.getEncoder().encodeToString(hash);
   }
 }
\ No newline at end of file
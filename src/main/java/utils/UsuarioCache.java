@@ -0,0 +1,109 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.Usuario;
+
+/**
+ * Cache em memória, por ID, dos usuários autenticados
+ * Requisições seguidas do mesmo usuário reaproveitam a entidade sem ir ao banco. Guarda uma cópia
+ * sem senha e refresh token, que só deve ser usada para leitura (nome, ID, referência em outras
+ * entidades). As escritas do UsuarioRepository invalidam a entrada; alterações feitas por outra
+ * instância são percebidas quando o TTL expira.
+ */
+public class UsuarioCache {
+
+    // Tempo que um usuário fica em cache
+    private static final long TTL_MS = 60_000;
+
+    // Acima deste número de entradas, as expiradas são descartadas
+    private static final int MAXIMO_ENTRADAS = 10000;
+
+    // Mapa de usuarioId -> Entrada
+    private static final Map<Integer, Entrada> usuarios = new ConcurrentHashMap<>();
+
+    private static final class Entrada {
+        private final Usuario usuario;
+        private final long validoAte;
+
+        private Entrada(Usuario usuario, long validoAte) {
+            this.usuario = usuario;
+            this.validoAte = validoAte;
+        }
+    }
+
+    /**
+     * Consulta o usuário em cache
+     * @param usuarioId ID do usuário
+     * @return Usuário em cache, ou null se for preciso consultar o banco
+     */
+    public static Usuario obter(Integer usuarioId) {
+        if (usuarioId == null) {
+            return null;
+        }
+        Entrada entrada = usuarios.get(usuarioId);
+        if (entrada == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= entrada.validoAte) {
+            usuarios.remove(usuarioId, entrada);
+            return null;
+        }
+        return entrada.usuario;
+    }
+
+    /**
+     * Registra o usuário carregado do banco
+     * @param usuario Usuário carregado
+     * @return Cópia guardada em cache (sem senha e refresh token)
+     */
+    public static Usuario registrar(Usuario usuario) {
+        Usuario copia = copiar(usuario);
+        limparSeNecessario();
+        usuarios.put(copia.getId(), new Entrada(copia, System.currentTimeMillis() + TTL_MS));
+        return copia;
+    }
+
+    /**
+     * Descarta o usuário em cache (próxima consulta vai ao banco)
+     * @param usuarioId ID do usuário
+     */
+    public static void invalidar(Integer usuarioId) {
+        if (usuarioId != null) {
+            usuarios.remove(usuarioId);
+        }
+    }
+
+    /**
+     * Limpa todo o cache (útil para testes ou shutdown)
+     */
+    public static void limparTodos() {
+        usuarios.clear();
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        Usuario copia = new Usuario();
+        copia.setId(usuario.getId());
+        copia.setNome(usuario.getNome());
+        copia.setEmail(usuario.getEmail());
+        copia.setTelefone(usuario.getTelefone());
+        copia.setRoles(usuario.getRoles());
+        copia.setDataCadastro(usuario.getDataCadastro());
+        copia.setDataAtualizacao(usuario.getDataAtualizacao());
+        copia.setUuidFoto(usuario.getUuidFoto());
+        return copia;
+    }
+
+    private static void limparSeNecessario() {
+        if (usuarios.size() < MAXIMO_ENTRADAS) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+        usuarios.values().removeIf(e -> agora >= e.validoAte);
+        if (usuarios.size() >= MAXIMO_ENTRADAS) {
+            // Ainda cheio: recomeça do zero em vez de crescer sem limite
+            usuarios.clear();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package filter;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.core.UriInfo;
+import utils.JwtUtil;
+
+/**
+ * Benchmark do JwtAuthFilter (verificação do token com o cache do JwtUtil)
+ * - repetido: o mesmo token a cada requisição (ex.: Long Polling do chat), respondido pelo cache
+ * - cacheCheio: cache com MAXIMO_TOKENS_VERIFICADOS tokens válidos e cada requisição com um token
+ *   fora dele; mede a verificação RS256 sem o custo de varrer o cache inteiro a cada requisição
+ * Executar: mvn test-compile e rodar o main desta classe com o classpath de teste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JwtAuthFilterBenchmark {
+
+    private static final int TOKENS_NO_CACHE = 10_000;
+    private static final int TOKENS_FORA_DO_CACHE = 1_000;
+
+    @Param({"repetido", "cacheCheio"})
+    private String cenario;
+
+    private final JwtAuthFilter filtro = new JwtAuthFilter();
+    private final AtomicInteger proximo = new AtomicInteger();
+    // Uma requisição pronta por token: o benchmark mede o filtro, não a criação dos mocks
+    private ContainerRequestContext[] requisicoes;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        configurarChaves();
+        JwtUtil.limparTokensVerificados();
+
+        if ("repetido".equals(cenario)) {
+            requisicoes = new ContainerRequestContext[] { requisicao(gerarToken(1)) };
+            return;
+        }
+
+        for (int i = 0; i < TOKENS_NO_CACHE; i++) {
+            JwtUtil.verificar(gerarToken(100_000 + i));
+        }
+        requisicoes = new ContainerRequestContext[TOKENS_FORA_DO_CACHE];
+        for (int i = 0; i < requisicoes.length; i++) {
+            requisicoes[i] = requisicao(gerarToken(i));
+        }
+    }
+
+    @Benchmark
+    public ContainerRequestContext filtrar() throws IOException {
+        ContainerRequestContext ctx = requisicoes[Math.floorMod(proximo.getAndIncrement(), requisicoes.length)];
+        filtro.filter(ctx);
+        return ctx;
+    }
+
+    private static ContainerRequestContext requisicao(String token) {
+        // stubOnly: sem registro das chamadas, que cresceria a cada invocação
+        UriInfo uriInfo = mock(UriInfo.class, withSettings().stubOnly());
+        when(uriInfo.getPath()).thenReturn("chat/salas/1/mensagens");
+        ContainerRequestContext ctx = mock(ContainerRequestContext.class, withSettings().stubOnly());
+        when(ctx.getMethod()).thenReturn("GET");
+        when(ctx.getUriInfo()).thenReturn(uriInfo);
+        when(ctx.getHeaderString("Authorization")).thenReturn("Bearer " + token);
+        return ctx;
+    }
+
+    private static String gerarToken(int usuarioId) {
+        return JwtUtil.generateToken(usuarioId, "usuario" + usuarioId + "@teste.com", "USER", "usuario", 60);
+    }
+
+    private static void configurarChaves() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        KeyPair chaves = gerador.generateKeyPair();
+
+        Path privada = Files.createTempFile("jwt-privada", ".pem");
+        Path publica = Files.createTempFile("jwt-publica", ".pem");
+        Files.writeString(privada, pem("PRIVATE KEY", chaves.getPrivate().getEncoded()));
+        Files.writeString(publica, pem("PUBLIC KEY", chaves.getPublic().getEncoded()));
+        privada.toFile().deleteOnExit();
+        publica.toFile().deleteOnExit();
+
+        System.setProperty("jwt.privateKeyPath", privada.toString());
+        System.setProperty("jwt.publicKeyPath", publica.toString());
+    }
+
+    private static String pem(String tipo, byte[] der) {
+        return "-----BEGIN " + tipo + "-----\n"
+                + Base64.getMimeEncoder().encodeToString(der)
+                + "\n-----END " + tipo + "-----\n";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,216 @@
+package repository.providers.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Ordem das mensagens com chat.notificacao.tipo=postgres, com duas instâncias gravando na mesma sala
+ * Cada "instância" grava com o protocolo do NotificacaoChatPostgresImpl (trava da sala, ID da sequence,
+ * pg_notify e commit na mesma transação, com uma pausa antes do commit para embaralhar as transações)
+ * e escuta o canal com o agrupamento do ouvinte. Cada instância precisa receber todos os IDs de cada
+ * sala, em ordem crescente: um ID menor depois de um maior seria pulado pelos cursores dos clientes.
+ * Precisa de um PostgreSQL: -Dchat.teste.postgres.url=jdbc:postgresql://... (e .usuario / .senha).
+ * Usa schema, sequence e canal próprios, removidos ao final.
+ */
+@EnabledIfSystemProperty(named = "chat.teste.postgres.url", matches = ".+")
+class NotificacaoChatPostgresOrdemTest {
+
+    private static final String SCHEMA = "chat_teste_ordem";
+    private static final String CANAL = "chat_teste_ordem";
+
+    // Chave própria, para não disputar as travas de salas reais se o banco for compartilhado
+    private static final int TRAVA_TESTE = NotificacaoChatPostgresImpl.TRAVA_SALA + 1000;
+
+    private static final int SALAS = 3;
+    private static final int GRAVADORES_POR_INSTANCIA = 4;
+    private static final int MENSAGENS_POR_GRAVADOR = 150;
+
+    @BeforeEach
+    void criarEsquema() throws SQLException {
+        try (Connection conexao = conectar(); Statement st = conexao.createStatement()) {
+            st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            st.execute("CREATE SCHEMA " + SCHEMA);
+            st.execute("CREATE SEQUENCE " + SCHEMA + ".seq_mensagem");
+            st.execute("CREATE TABLE " + SCHEMA + ".mensagem (id INTEGER PRIMARY KEY DEFAULT nextval('"
+                    + SCHEMA + ".seq_mensagem'), sala_id INTEGER NOT NULL)");
+        }
+    }
+
+    @AfterEach
+    void removerEsquema() throws SQLException {
+        try (Connection conexao = conectar(); Statement st = conexao.createStatement()) {
+            st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+    }
+
+    @Test
+    void duasInstanciasRecebemCadaSalaEmOrdemDeId() throws Exception {
+        Instancia a = new Instancia();
+        Instancia b = new Instancia();
+        a.iniciar();
+        b.iniciar();
+
+        ExecutorService gravadores = Executors.newFixedThreadPool(2 * GRAVADORES_POR_INSTANCIA);
+        List<Future<?>> tarefas = new ArrayList<>();
+        for (int i = 0; i < 2 * GRAVADORES_POR_INSTANCIA; i++) {
+            tarefas.add(gravadores.submit(() -> {
+                gravar();
+                return null;
+            }));
+        }
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get(5, TimeUnit.MINUTES);
+        }
+        gravadores.shutdown();
+
+        Map<Integer, List<Integer>> gravadas = listarGravadas();
+        int total = 2 * GRAVADORES_POR_INSTANCIA * MENSAGENS_POR_GRAVADOR;
+        assertTrue(a.aguardar(total, 30) && b.aguardar(total, 30), "notificações não chegaram");
+        a.parar();
+        b.parar();
+
+        for (Instancia instancia : List.of(a, b)) {
+            assertTrue(instancia.foraDeOrdem.isEmpty(), "IDs fora de ordem: " + instancia.foraDeOrdem);
+            for (Map.Entry<Integer, List<Integer>> sala : gravadas.entrySet()) {
+                assertEquals(sala.getValue(), instancia.recebidas.get(sala.getKey()), "sala " + sala.getKey());
+            }
+        }
+    }
+
+    /**
+     * Mesmo protocolo da inserção com notificação PostgreSQL (ChatMensagemRepository.inserirMensagem)
+     */
+    private void gravar() throws Exception {
+        try (Connection conexao = conectar();
+                PreparedStatement travar = conexao.prepareStatement("SELECT pg_advisory_xact_lock(?, ?)");
+                PreparedStatement inserir = conexao.prepareStatement(
+                        "INSERT INTO " + SCHEMA + ".mensagem (sala_id) VALUES (?) RETURNING id");
+                PreparedStatement notificar = conexao.prepareStatement("SELECT pg_notify(?, ?)")) {
+            conexao.setAutoCommit(false);
+            for (int i = 0; i < MENSAGENS_POR_GRAVADOR; i++) {
+                int sala = ThreadLocalRandom.current().nextInt(SALAS) + 1;
+
+                travar.setInt(1, TRAVA_TESTE);
+                travar.setInt(2, sala);
+                travar.execute();
+
+                inserir.setInt(1, sala);
+                int id;
+                try (ResultSet rs = inserir.executeQuery()) {
+                    rs.next();
+                    id = rs.getInt(1);
+                }
+
+                notificar.setString(1, CANAL);
+                notificar.setString(2, NotificacaoChatPostgresImpl.TODAS + ":" + sala + ":" + id);
+                notificar.execute();
+
+                // Sem a trava, uma transação com ID maior passaria à frente desta aqui
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                conexao.commit();
+            }
+        }
+    }
+
+    private Map<Integer, List<Integer>> listarGravadas() throws SQLException {
+        Map<Integer, List<Integer>> gravadas = new HashMap<>();
+        try (Connection conexao = conectar(); Statement st = conexao.createStatement();
+                ResultSet rs = st.executeQuery("SELECT sala_id, id FROM " + SCHEMA + ".mensagem ORDER BY id")) {
+            while (rs.next()) {
+                gravadas.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>()).add(rs.getInt(2));
+            }
+        }
+        return gravadas;
+    }
+
+    private static Connection conectar() throws SQLException {
+        return DriverManager.getConnection(System.getProperty("chat.teste.postgres.url"),
+                System.getProperty("chat.teste.postgres.usuario"), System.getProperty("chat.teste.postgres.senha"));
+    }
+
+    /**
+     * Ouvinte de uma instância: agrupa cada rajada como o NotificacaoChatPostgresImpl e
+     * registra os IDs na ordem em que seriam distribuídos
+     */
+    private static final class Instancia {
+        private final Map<Integer, List<Integer>> recebidas = new ConcurrentHashMap<>();
+        private final List<String> foraDeOrdem = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean ativo = new AtomicBoolean(true);
+        private final ExecutorService ouvinte = Executors.newSingleThreadExecutor();
+        private volatile int total;
+
+        private void iniciar() throws Exception {
+            Connection conexao = conectar();
+            try (Statement st = conexao.createStatement()) {
+                st.execute("LISTEN " + CANAL);
+            }
+            ouvinte.submit(() -> {
+                try (conexao) {
+                    PGConnection pgConexao = conexao.unwrap(PGConnection.class);
+                    while (ativo.get()) {
+                        PGNotification[] notificacoes = pgConexao.getNotifications(100);
+                        if (notificacoes == null || notificacoes.length == 0) {
+                            continue;
+                        }
+                        Map<Integer, TreeSet<Integer>> idsPorSala = new HashMap<>();
+                        NotificacaoChatPostgresImpl.agrupar(notificacoes, idsPorSala, new HashMap<>());
+                        idsPorSala.forEach(this::distribuir);
+                    }
+                }
+                return null;
+            });
+        }
+
+        private void distribuir(Integer sala, TreeSet<Integer> ids) {
+            List<Integer> lista = recebidas.computeIfAbsent(sala, k -> new ArrayList<>());
+            for (Integer id : ids) {
+                if (!lista.isEmpty() && lista.get(lista.size() - 1) >= id) {
+                    foraDeOrdem.add("sala " + sala + ": " + id + " depois de " + lista.get(lista.size() - 1));
+                }
+                lista.add(id);
+                total++;
+            }
+        }
+
+        private boolean aguardar(int esperado, int segundos) throws InterruptedException {
+            long limite = System.currentTimeMillis() + segundos * 1000L;
+            while (total < esperado && System.currentTimeMillis() < limite) {
+                Thread.sleep(50);
+            }
+            return total >= esperado;
+        }
+
+        private void parar() throws InterruptedException {
+            ativo.set(false);
+            ouvinte.shutdown();
+            ouvinte.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
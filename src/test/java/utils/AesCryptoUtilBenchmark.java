@@ -0,0 +1,60 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark da descriptografia de uma página de mensagens (AesCryptoUtil.descriptografarLote)
+ * Várias threads simulam requisições simultâneas carregando o histórico, cada uma descriptografando
+ * a sua página na própria thread (como nas requisições do container).
+ * Executar: mvn test-compile e rodar o main desta classe com o classpath de teste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class AesCryptoUtilBenchmark {
+
+    // Tamanhos de página do chat (padrão, sincronização e limite do histórico)
+    @Param({"20", "50", "100"})
+    private int tamanho;
+
+    private List<String> criptografadas;
+
+    @Setup
+    public void preparar() throws Exception {
+        criptografadas = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            criptografadas.add(AesCryptoUtil.criptografar("Mensagem de teste número " + i + " no chat do estabelecimento"));
+        }
+    }
+
+    @Benchmark
+    public List<String> lote() {
+        return AesCryptoUtil.descriptografarLote(criptografadas);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AesCryptoUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
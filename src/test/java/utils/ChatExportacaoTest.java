@@ -0,0 +1,41 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Testes do CSV do ChatExportacao: escape de vírgulas/aspas e proteção contra fórmulas
+ */
+class ChatExportacaoTest {
+
+    @Test
+    void celulasIniciadasPorCaractereDeFormulaRecebemPrefixo() throws Exception {
+        assertEquals("1,2,\"'=Fulano\",,,\"'=HYPERLINK(\"\"http://x\"\"),\"\"a\"\")\"\n",
+                linha("=Fulano", "=HYPERLINK(\"http://x\"),\"a\")"));
+        assertEquals("1,2,\"'@Fulano\",,,\"'+1\"\n", linha("@Fulano", "+1"));
+        assertEquals("1,2,Fulano,,,\"'-2+3\"\n", linha("Fulano", "-2+3"));
+    }
+
+    @Test
+    void celulasComunsSeguemOEscapePadrao() throws Exception {
+        assertEquals("1,2,Fulano,,,\"olá, \"\"todos\"\"\"\n", linha("Fulano", "olá, \"todos\""));
+        assertEquals("1,2,Fulano,,,a=b\n", linha("Fulano", "a=b"));
+    }
+
+    private static String linha(String nome, String texto) throws Exception {
+        ChatMensagemResponse mensagem = new ChatMensagemResponse();
+        mensagem.setId(1);
+        mensagem.setUsuarioId(2);
+        mensagem.setUsuarioNome(nome);
+        mensagem.setMensagem(texto);
+        StringWriter saida = new StringWriter();
+        ChatExportacao.escrever(ChatExportacao.FORMATO_CSV, List.of(mensagem), saida);
+        return saida.toString();
+    }
+}
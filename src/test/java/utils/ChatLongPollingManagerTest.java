@@ -0,0 +1,187 @@
+package utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import model.dto.ChatMensagemResponse;
+
+/**
+ * Testes do ChatLongPollingManager: geração por sala e ausência de notificações perdidas
+ * Cada teste usa salas próprias, pois o gerenciador é estático.
+ */
+class ChatLongPollingManagerTest {
+
+    // Salas 1001 e 1001 + 64 caem na mesma faixa (64 faixas)
+    private static final int SALA = 1001;
+    private static final int SALA_MESMA_FAIXA = SALA + 64;
+
+    @Test
+    void notificacaoDeOutraSalaDaMesmaFaixaNaoAlteraGeracao() {
+        long geracao = ChatLongPollingManager.geracaoAtual(SALA);
+
+        ChatLongPollingManager.notificarNovaMensagem(mensagem(SALA_MESMA_FAIXA, 1), null);
+
+        assertEquals(geracao, ChatLongPollingManager.geracaoAtual(SALA));
+
+        AtomicBoolean notificado = new AtomicBoolean();
+        ChatLongPollingManager.Aguardando aguardando = ChatLongPollingManager.aguardarMensagens(
+                SALA, mock(AsyncResponse.class), 0, geracao, 30, TimeUnit.SECONDS,
+                (ar, corpo) -> notificado.set(true));
+
+        // Continua aguardando: a notificação foi de outra sala
+        assertFalse(notificado.get());
+        assertEquals(1, ChatLongPollingManager.contarAguardando(SALA));
+        ChatLongPollingManager.removerAguardando(aguardando);
+    }
+
+    @Test
+    void notificacaoDaSalaEntreConsultaERegistroLiberaNaHora() {
+        int sala = 2002;
+        long geracao = ChatLongPollingManager.geracaoAtual(sala);
+
+        ChatLongPollingManager.notificarNovaMensagem(mensagem(sala, 1), null);
+
+        AtomicBoolean notificado = new AtomicBoolean();
+        ChatLongPollingManager.aguardarMensagens(sala, mock(AsyncResponse.class), 0, geracao, 30, TimeUnit.SECONDS,
+                (ar, corpo) -> notificado.set(true));
+
+        assertTrue(notificado.get());
+        assertEquals(0, ChatLongPollingManager.contarAguardando(sala));
+    }
+
+    @Test
+    void callbackComFalhaRespondeComServicoIndisponivelELiberaOsDemais() {
+        int sala = 4004;
+        AsyncResponse comFalha = mock(AsyncResponse.class);
+        AtomicBoolean outroNotificado = new AtomicBoolean();
+
+        ChatLongPollingManager.aguardarMensagens(sala, comFalha, 0, ChatLongPollingManager.geracaoAtual(sala),
+                30, TimeUnit.SECONDS, (ar, corpo) -> {
+                    throw new RejectedExecutionException("executor saturado");
+                });
+        ChatLongPollingManager.aguardarMensagens(sala, mock(AsyncResponse.class), 0,
+                ChatLongPollingManager.geracaoAtual(sala), 30, TimeUnit.SECONDS,
+                (ar, corpo) -> outroNotificado.set(true));
+
+        ChatLongPollingManager.notificarNovaMensagem(mensagem(sala, 1), 0);
+
+        // A requisição cujo callback falhou não fica pendurada (o timeout a ignoraria, já concluída)
+        verify(comFalha).resume(argThat((Object resposta) -> resposta instanceof Response
+                && ((Response) resposta).getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()));
+        assertTrue(outroNotificado.get());
+        assertEquals(0, ChatLongPollingManager.contarAguardando(sala));
+    }
+
+    /**
+     * Vários clientes seguem o ciclo do ChatService (geração, consulta, registro) enquanto uma thread
+     * publica mensagens na sala e outra notifica salas da mesma faixa. Ao final, nenhuma requisição
+     * pode continuar aguardando com um cursor anterior à última mensagem (notificação perdida).
+     */
+    @Test
+    void naoPerdeNotificacoesSobConcorrencia() throws Exception {
+        int sala = 3003;
+        int vizinha = sala + 64;
+        int clientes = 32;
+        int mensagens = 2000;
+
+        // "Banco": ID da última mensagem da sala
+        AtomicInteger ultimoId = new AtomicInteger();
+        AtomicInteger respondidasNaHora = new AtomicInteger();
+        AtomicInteger notificadas = new AtomicInteger();
+        Map<ChatLongPollingManager.Aguardando, Integer> pendentes = new ConcurrentHashMap<>();
+        AtomicBoolean publicando = new AtomicBoolean(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(clientes + 2);
+        CountDownLatch inicio = new CountDownLatch(1);
+        CountDownLatch fimClientes = new CountDownLatch(clientes);
+
+        for (int c = 0; c < clientes; c++) {
+            pool.execute(() -> {
+                try {
+                    inicio.await();
+                    while (publicando.get()) {
+                        int after = ultimoId.get();
+                        long geracao = ChatLongPollingManager.geracaoAtual(sala);
+                        if (ultimoId.get() > after) {
+                            respondidasNaHora.incrementAndGet();
+                            continue;
+                        }
+                        CountDownLatch liberado = new CountDownLatch(1);
+                        ChatLongPollingManager.Aguardando aguardando = ChatLongPollingManager.aguardarMensagens(
+                                sala, mock(AsyncResponse.class), after, geracao, 30, TimeUnit.SECONDS,
+                                (ar, corpo) -> {
+                                    notificadas.incrementAndGet();
+                                    liberado.countDown();
+                                });
+                        pendentes.put(aguardando, after);
+                        while (!liberado.await(50, TimeUnit.MILLISECONDS)) {
+                            // Ainda aguardando quando a publicação terminou: verificado ao final
+                            if (!publicando.get()) {
+                                return;
+                            }
+                        }
+                        pendentes.remove(aguardando);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    fimClientes.countDown();
+                }
+            });
+        }
+
+        pool.execute(() -> {
+            try {
+                inicio.await();
+                for (int id = 1; id <= mensagens; id++) {
+                    ultimoId.set(id);
+                    ChatLongPollingManager.notificarNovaMensagem(mensagem(sala, id), null);
+                    ChatLongPollingManager.notificarAlteracao(vizinha);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                publicando.set(false);
+            }
+        });
+
+        inicio.countDown();
+        assertTrue(fimClientes.await(60, TimeUnit.SECONDS), "clientes não terminaram");
+        pool.shutdownNow();
+
+        int ultimo = ultimoId.get();
+        for (Map.Entry<ChatLongPollingManager.Aguardando, Integer> pendente : pendentes.entrySet()) {
+            if (pendente.getKey().marcarConcluido()) {
+                assertEquals(ultimo, pendente.getValue(), "requisição aguardando com mensagens novas");
+                ChatLongPollingManager.removerAguardando(pendente.getKey());
+            }
+        }
+        assertEquals(0, ChatLongPollingManager.contarAguardando(sala));
+        assertTrue(notificadas.get() + respondidasNaHora.get() > 0);
+    }
+
+    private static ChatMensagemResponse mensagem(int salaId, int id) {
+        ChatMensagemResponse mensagem = new ChatMensagemResponse();
+        mensagem.setSalaId(salaId);
+        mensagem.setId(id);
+        return mensagem;
+    }
+}
@@ -0,0 +1,68 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import model.dto.ChatSalaDetalhadaResponse;
+
+/**
+ * Benchmark da montagem de "minhas salas detalhadas" (ChatMensagemConversor.converterSalasDetalhadas)
+ * a partir das linhas da consulta, para usuários com 1, 10 e 50 salas ativas
+ * Cobre a descriptografia das últimas mensagens e a leitura dos contadores de não lidas;
+ * a consulta em si (LATERAL JOIN) fica de fora.
+ * Executar: mvn test-compile e rodar o main desta classe com o classpath de teste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatSalasDetalhadasBenchmark {
+
+    private static final int USUARIO_ID = 1;
+
+    @Param({"1", "10", "50"})
+    private int salas;
+
+    private List<Object[]> linhas;
+
+    @Setup
+    public void preparar() throws Exception {
+        linhas = new ArrayList<>(salas);
+        Date agora = new Date();
+        for (int i = 0; i < salas; i++) {
+            int salaId = 10_000 + i;
+            ChatMensagensNaoLidas.definir(salaId, USUARIO_ID, i, Long.MAX_VALUE);
+            linhas.add(new Object[] {
+                    salaId, salaId, "Estabelecimento " + i, agora,
+                    AesCryptoUtil.criptografar("Última mensagem da sala " + i), "Usuário " + i, agora, 25 });
+        }
+    }
+
+    @Benchmark
+    public List<ChatSalaDetalhadaResponse> converter() {
+        return ChatMensagemConversor.converterSalasDetalhadas(linhas, USUARIO_ID);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChatSalasDetalhadasBenchmark.class.getSimpleName()).build()).run();
+    }
+}